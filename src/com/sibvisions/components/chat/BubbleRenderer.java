@@ -0,0 +1,398 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import com.sibvisions.components.chat.Message.Bubble;
+import com.sibvisions.util.log.LoggerFactory;
+
+/**
+ * The <code>BubbleRenderer</code> renders message bubbles into images with a pool of background
+ * threads. The text will be rendered with Java2D only, without Swing components, and the image 
+ * will be handed over to the bubble in the event dispatch thread. If the text doesn't fit into 
+ * the bubble, no image will be created and the bubble will be painted as usual.
+ * <p>
+ * The text lines are not wrapped in the background. The height of a bubble depends on the 
+ * wrapped lines, so the text label wraps them in the event dispatch thread for the layout 
+ * anyway, and the request uses the same lines. This way the image always matches the painted
+ * text, but the background threads only save the painting, not the wrapping.
+ * <p>
+ * The avatar is not rendered, because it's a separate component next to the bubble and already
+ * painted with one scaled image from the <code>AvatarCache</code>.
+ * 
+ * @author René Jahn
+ */
+final class BubbleRenderer
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the worker pool. */
+	private static ExecutorService pool;
+	
+	/** the number of rendered images. */
+	private static AtomicInteger aiRendered = new AtomicInteger();
+	
+	/** the number of requests which couldn't be rendered. */
+	private static AtomicInteger aiRejected = new AtomicInteger();
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Invisible constructor because <code>BubbleRenderer</code> is a utility class.
+	 */
+	private BubbleRenderer()
+	{
+		// No instance needed.
+	}
+
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	
+	/**
+	 * Renders the given request in the background. The result will be delivered to 
+	 * {@link Bubble#prerendered(Request, BufferedImage)} in the event dispatch thread.
+	 * 
+	 * @param pRequest the request
+	 */
+	static synchronized void render(final Request pRequest)
+	{
+		if (pool == null)
+		{
+			int iThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+			
+			pool = Executors.newFixedThreadPool(iThreads, new ThreadFactory()
+			{
+				/** the thread number. */
+				private AtomicInteger aiNumber = new AtomicInteger();
+				
+				@Override
+				public Thread newThread(Runnable pRunnable)
+				{
+					Thread th = new Thread(pRunnable, "BubbleRenderer-" + aiNumber.incrementAndGet());
+					th.setDaemon(true);
+					th.setPriority(Thread.NORM_PRIORITY - 1);
+					
+					return th;
+				}
+			});
+		}
+		
+		pool.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (pRequest.bCancelled)
+				{
+					return;
+				}
+				
+				BufferedImage img = null;
+				
+				try
+				{
+					img = createImage(pRequest);
+				}
+				catch (Throwable th)
+				{
+					LoggerFactory.getInstance(BubbleRenderer.class).error(th);
+				}
+				
+				if (img != null)
+				{
+					aiRendered.incrementAndGet();
+				}
+				else
+				{
+					aiRejected.incrementAndGet();
+				}
+				
+				final BufferedImage imgResult = img;
+				
+				SwingUtilities.invokeLater(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						pRequest.bubble.prerendered(pRequest, imgResult);
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Gets the number of rendered images.
+	 * 
+	 * @return the number of images
+	 */
+	static int getRenderedCount()
+	{
+		return aiRendered.get();
+	}
+	
+	/**
+	 * Gets the number of requests which couldn't be rendered, because the text didn't fit.
+	 * 
+	 * @return the number of requests
+	 */
+	static int getRejectedCount()
+	{
+		return aiRejected.get();
+	}
+	
+	/**
+	 * Creates the bubble image for the given request.
+	 * 
+	 * @param pRequest the request
+	 * @return the image or <code>null</code> if the text doesn't fit into the text area
+	 */
+	static BufferedImage createImage(Request pRequest)
+	{
+		double dScale = pRequest.iScale / 4d;
+		
+		BufferedImage img = new BufferedImage((int)Math.ceil(pRequest.iWidth * dScale), (int)Math.ceil(pRequest.iHeight * dScale), 
+				                              BufferedImage.TYPE_INT_ARGB_PRE);
+		
+		Graphics2D g2 = img.createGraphics();
+		
+		try
+		{
+			g2.scale(dScale, dScale);
+			
+			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			
+			g2.setPaint(pRequest.colBackground);
+			g2.fill(pRequest.shape);
+			
+			if (pRequest.mapTextHints != null)
+			{
+				g2.addRenderingHints(pRequest.mapTextHints);
+			}
+			
+			g2.setColor(pRequest.colForeground);
+			g2.setFont(pRequest.font);
+			
+			if (!paintText(g2, pRequest))
+			{
+				return null;
+			}
+		}
+		finally
+		{
+			g2.dispose();
+		}
+		
+		return img;
+	}
+	
+	/**
+	 * Paints the text lines of the given request.
+	 * 
+	 * @param pGraphics the graphics
+	 * @param pRequest the request
+	 * @return <code>true</code> if the text fits into the text area, <code>false</code> otherwise
+	 */
+	private static boolean paintText(Graphics2D pGraphics, Request pRequest)
+	{
+		if (pRequest.saLines.length * pRequest.iLineHeight > pRequest.iTextHeight)
+		{
+			return false;
+		}
+		
+		int y = pRequest.iTextY + pRequest.iAscent;
+		
+		for (int i = 0; i < pRequest.saLines.length; i++)
+		{
+			if (pRequest.saLines[i].length() > 0)
+			{
+				pGraphics.drawString(pRequest.saLines[i], pRequest.iTextX, y);
+			}
+			
+			y += pRequest.iLineHeight;
+		}
+		
+		return true;
+	}
+	
+    //****************************************************************
+    // Subclass definition
+    //****************************************************************
+	
+	/**
+	 * The <code>Request</code> is an immutable snapshot of a bubble, created in the event 
+	 * dispatch thread.
+	 * 
+	 * @author René Jahn
+	 */
+	static final class Request
+	{
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Class members
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/** the bubble. */
+		private final Bubble bubble;
+		
+		/** the bubble shape. */
+		private final Shape shape;
+		
+		/** the wrapped text lines. */
+		private final String[] saLines;
+		
+		/** the font. */
+		private final Font font;
+		
+		/** the background color. */
+		private final Color colBackground;
+		
+		/** the text color. */
+		private final Color colForeground;
+		
+		/** the text rendering hints or <code>null</code> for default antialiasing. */
+		private final Map<?, ?> mapTextHints;
+		
+		/** the content revision. */
+		private final int iRevision;
+		
+		/** the bubble width. */
+		private final int iWidth;
+		
+		/** the bubble height. */
+		private final int iHeight;
+		
+		/** the device scale, multiplied by 4. */
+		private final int iScale;
+		
+		/** the x position of the text area. */
+		private final int iTextX;
+		
+		/** the y position of the text area. */
+		private final int iTextY;
+		
+		/** the height of the text area. */
+		private final int iTextHeight;
+		
+		/** the ascent of the font. */
+		private final int iAscent;
+		
+		/** the line height of the font. */
+		private final int iLineHeight;
+		
+		/** whether the request is not needed anymore. */
+		private volatile boolean bCancelled;
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Initialization
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/**
+		 * Creates a new instance of <code>Request</code>.
+		 * 
+		 * @param pBubble the bubble
+		 * @param pShape the bubble shape
+		 * @param pLines the wrapped text lines
+		 * @param pFont the font
+		 * @param pBackground the background color
+		 * @param pForeground the text color
+		 * @param pTextHints the text rendering hints
+		 * @param pRevision the content revision
+		 * @param pWidth the bubble width
+		 * @param pHeight the bubble height
+		 * @param pScale the device scale, multiplied by 4
+		 * @param pTextX the x position of the text area
+		 * @param pTextY the y position of the text area
+		 * @param pTextHeight the height of the text area
+		 * @param pAscent the ascent of the font
+		 * @param pLineHeight the line height of the font
+		 */
+		Request(Bubble pBubble, Shape pShape, String[] pLines, Font pFont, Color pBackground, Color pForeground, Map<?, ?> pTextHints, 
+				int pRevision, int pWidth, int pHeight, int pScale, int pTextX, int pTextY, int pTextHeight,
+				int pAscent, int pLineHeight)
+		{
+			bubble = pBubble;
+			shape = pShape;
+			saLines = pLines;
+			font = pFont;
+			colBackground = pBackground;
+			colForeground = pForeground;
+			mapTextHints = pTextHints;
+			iRevision = pRevision;
+			iWidth = pWidth;
+			iHeight = pHeight;
+			iScale = pScale;
+			iTextX = pTextX;
+			iTextY = pTextY;
+			iTextHeight = pTextHeight;
+			iAscent = pAscent;
+			iLineHeight = pLineHeight;
+		}
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // User-defined methods
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/**
+		 * Gets whether the request was created for the given bubble state.
+		 * 
+		 * @param pRevision the content revision
+		 * @param pWidth the bubble width
+		 * @param pHeight the bubble height
+		 * @param pScale the device scale, multiplied by 4
+		 * @param pFont the font
+		 * @param pBackground the background color
+		 * @return <code>true</code> if the state is the same
+		 */
+		boolean matches(int pRevision, int pWidth, int pHeight, int pScale, Font pFont, Color pBackground)
+		{
+			return iRevision == pRevision
+				   && iWidth == pWidth
+				   && iHeight == pHeight
+				   && iScale == pScale
+				   && font.equals(pFont)
+				   && colBackground.equals(pBackground);
+		}
+		
+		/**
+		 * Cancels the request, if not already rendered.
+		 */
+		void cancel()
+		{
+			bCancelled = true;
+		}
+		
+	}	// Request
+	
+}	// BubbleRenderer
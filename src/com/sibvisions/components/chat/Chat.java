@@ -21,16 +21,27 @@ import java.awt.Font;
 import java.awt.GradientPaint;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
 import java.awt.Insets;
 import java.awt.Rectangle;
+import java.awt.Transparency;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.AdjustmentEvent;
 import java.awt.event.AdjustmentListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import jvx.rad.model.ui.ITranslatable;
 import jvx.rad.util.ITranslator;
@@ -44,28 +55,45 @@ import javax.swing.JLayeredPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
+import javax.swing.JViewport;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.border.Border;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.plaf.basic.BasicScrollBarUI;
 
-import com.sibvisions.components.chat.Message.Type;
 import com.sibvisions.components.chat.animation.FloatingComponentAnimation;
 import com.sibvisions.components.chat.animation.ScrollAnimation;
+import com.sibvisions.components.chat.component.AnimatedIcon;
 import com.sibvisions.components.chat.component.ArcPanel;
 import com.sibvisions.components.chat.component.BasePanel;
 import com.sibvisions.components.chat.component.MaterialButton;
+import com.sibvisions.components.chat.component.RenderQuality;
 import com.sibvisions.components.chat.component.TextPane;
 import com.sibvisions.components.chat.event.ChatListener;
+import com.sibvisions.components.chat.event.ChatModelEvent;
+import com.sibvisions.components.chat.event.ChatModelListener;
 import com.sibvisions.components.chat.event.CloseEvent;
 import com.sibvisions.components.chat.event.MessageEvent;
+import com.sibvisions.components.chat.model.ChatMessage;
+import com.sibvisions.components.chat.model.ChatModel;
+import com.sibvisions.components.chat.model.DefaultChatModel;
+import com.sibvisions.components.chat.model.HistoryProvider;
+import com.sibvisions.components.chat.model.MessageStore;
+import com.sibvisions.components.chat.util.BoundedQueue;
 import com.sibvisions.components.chat.util.GradientIconFontSwing;
 import com.sibvisions.components.chat.util.GradientIconFontSwing.GradientDirection;
+import com.sibvisions.components.chat.util.PrefixSumTree;
 import com.sibvisions.rad.ui.swing.ext.JVxUtil;
 import com.sibvisions.rad.ui.swing.ext.layout.JVxBorderLayout;
 import com.sibvisions.rad.ui.swing.ext.layout.JVxFormLayout;
 import com.sibvisions.rad.ui.swing.ext.layout.JVxFormLayout.Constraint;
 import com.sibvisions.util.ArrayUtil;
+import com.sibvisions.util.log.LoggerFactory;
 import com.sibvisions.util.type.StringUtil;
 
 import jiconfont.IconCode;
@@ -93,6 +121,42 @@ public class Chat extends BasePanel
 		Right
 	};
 	
+	/** the interval for draining posted messages (one frame). */
+	private static final int FRAME_INTERVAL = 16;
+	
+	/** the default maximum number of posted messages. */
+	private static final int DEFAULT_POST_CAPACITY = 10000;
+	
+	/** the number of messages which will be evicted or loaded at once. */
+	private static final int EVICTION_PAGE_SIZE = 50;
+	
+	/** the start color of the background gradient. */
+	private static final Color COLOR_GRADIENT_START = new Color(58, 72, 85);
+	
+	/** the end color of the background gradient. */
+	private static final Color COLOR_GRADIENT_END = new Color(28, 38, 50);
+	
+	/** the delay (ms) after the last resize event, before messages will be measured again. */
+	private static final int RESIZE_DELAY = 150;
+	
+	/** the default idle time (ms) before rendering with full quality again. */
+	private static final int DEFAULT_QUALITY_DELAY = 300;
+	
+	/** the number of messages which will be requested from the history provider. */
+	private static final int HISTORY_PAGE_SIZE = 50;
+	
+	/** the default length of large messages. */
+	private static final int DEFAULT_LARGE_MESSAGE_LENGTH = 20000;
+	
+	/** the default number of lines of collapsed messages. */
+	private static final int DEFAULT_COLLAPSED_LINES = 20;
+	
+	/** the shared default typing icon for messages on the left. */
+	private static Icon icoDefaultTypingLeft;
+	
+	/** the shared default typing icon for messages on the right. */
+	private static Icon icoDefaultTypingRight;
+	
 	/** the text message. */
 	private TextPane text = new TextPane();
 	
@@ -118,7 +182,7 @@ public class Chat extends BasePanel
     private FloatingComponentAnimation fbaScrollDown;
     
     /** the message panel. */
-    private ArcPanel panMessages = new ArcPanel();
+    private MessageList panMessages = new MessageList(this, new DefaultChatModel());
 
     /** the title bar panel. */
     private JPanel panTitleBar = new JPanel();
@@ -132,8 +196,8 @@ public class Chat extends BasePanel
     /** the option buttons panel. */
     private ArcPanel panOptionButtons;
     
-    /** the messages layout. */
-    private JVxFormLayout flMessages = new JVxFormLayout();
+    /** the options panel with the input area. */
+    private JPanel panOptions;
     
 	/** The translation mapping. */
 	private TranslationMap translation = null;
@@ -157,17 +221,71 @@ public class Chat extends BasePanel
 	private Image imgAvatarRight;
 	
 	/** the left typing icon. */
-	private Icon icoTypingLeft = JVxUtil.getIcon("/com/sibvisions/components/chat/pulse_left.gif");
+	private Icon icoTypingLeft = getDefaultTypingIcon(true);
 	
 	/** the right typing icon. */
-	private Icon icoTypingRight = JVxUtil.getIcon("/com/sibvisions/components/chat/pulse_right.gif");;
+	private Icon icoTypingRight = getDefaultTypingIcon(false);
 	
 	/** the title. */
 	private JLabel lblTitle = new JLabel();
 	
-	/** the messages. */
-	private ArrayUtil<Message> liMessages = new ArrayUtil<Message>();
-
+	/** the messages posted from other threads. */
+	private BoundedQueue<ChatMessage> quePosted = new BoundedQueue<ChatMessage>(DEFAULT_POST_CAPACITY);
+	
+	/** whether draining of posted messages is scheduled. */
+	private AtomicBoolean bDrainScheduled = new AtomicBoolean();
+	
+	/** the timer for draining posted messages. */
+	private Timer tiDrain;
+	
+	/** the timer for the reflow after resizing. */
+	private Timer tiResize;
+	
+	/** the timer for rendering with full quality after scrolling, resizing or animations. */
+	private Timer tiQuality;
+	
+	/** the cached background. */
+	private BufferedImage imgBackground;
+	
+	/** the left inset of the cached background, the gradient starts outside. */
+	private int iBackgroundLeft;
+	
+	/** the chat width of the cached background, the gradient covers the whole width. */
+	private int iBackgroundWidth;
+	
+	/** the device scale of the cached background, multiplied by 4. */
+	private int iBackgroundScale;
+	
+	/** the store for evicted messages of the current model. */
+	private MessageStore store;
+	
+	/** the stores for evicted messages of other models. */
+	private WeakHashMap<ChatModel, MessageStore> whmpStores = new WeakHashMap<ChatModel, MessageStore>();
+	
+	/** the stores which were created by the chat. */
+	private Set<MessageStore> setCreatedStores = Collections.newSetFromMap(new WeakHashMap<MessageStore, Boolean>());
+	
+	/** the current store request. */
+	private StoreWorker swStore;
+	
+	/** the estimated sizes of the model messages. */
+	private PrefixSumTree sizes = new PrefixSumTree(16);
+	
+	/** the listener for the retention of the model. */
+	private ChatModelListener lisRetention;
+	
+	/** the provider for older messages. */
+	private HistoryProvider history;
+	
+	/** the current history request. */
+	private HistoryWorker hwLoad;
+	
+	/** the prefetched page of older messages. */
+	private List<ChatMessage> liPrefetched;
+	
+	/** the oldest message of the model, when the prefetched page was requested. */
+	private ChatMessage cmsgPrefetched;
+	
 	/** the chat listeners. */
 	private ArrayUtil<ChatListener> liListeners = new ArrayUtil<ChatListener>();
 	
@@ -188,15 +306,72 @@ public class Chat extends BasePanel
 	
 	/** the typing message. */
 	private String sTypingMessage;
+	
+	/** the update (transaction) counter. */
+	private int iUpdateCount;
+	
+	/** the last width of the message area. */
+	private int iMessagesWidth;
+	
+	/** the idle time (ms) before rendering with full quality again. */
+	private int iQualityDelay = DEFAULT_QUALITY_DELAY;
+	
+	/** the minimum text length of large messages. */
+	private int iLargeMessageLength = DEFAULT_LARGE_MESSAGE_LENGTH;
+	
+	/** the number of lines of collapsed messages. */
+	private int iCollapsedLines = DEFAULT_COLLAPSED_LINES;
+	
+	/** the wrapped line count of the input text. */
+	private int iInputLines = -1;
+	
+	/** the maximum number of messages in the model. */
+	private int iMaxMessages;
+	
+	/** the maximum estimated size of all messages in the model. */
+	private long lMaxMessageBytes;
 
 	/** whether the translation is enabled. */
     private boolean bTranslationEnabled = true;
     
+    /** whether a line count check of the input text is scheduled. */
+    private boolean bInputLinesScheduled;
+    
     /** whether to show a typing message on the left. */
     private boolean bTypingLeft;
     
     /** whether to show a typing message on the right. */
     private boolean bTypingRight;
+    
+    /** whether scrolling to the bottom was deferred because of an update. */
+    private boolean bScrollPending;
+    
+    /** whether the store was created by the chat. */
+    private boolean bStoreCreated;
+    
+    /** whether writing to the store failed, no more messages will be evicted to the store. */
+    private boolean bStoreFailed;
+    
+    /** whether a retention check is scheduled. */
+    private boolean bRetentionScheduled;
+    
+    /** whether evicted messages or history will be loaded. */
+    private boolean bLoadScheduled;
+    
+    /** whether the history provider has no more messages. */
+    private boolean bHistoryComplete;
+    
+    /** whether message bubbles will be painted with pre-rendered images. */
+    private boolean bBubbleImagesEnabled;
+    
+    /** whether the message list is opaque and scrolls with a viewport backbuffer. */
+    private boolean bBlitScrollEnabled;
+    
+    /** whether message bubbles will be rendered in the background. */
+    private boolean bBubblePrerenderingEnabled;
+    
+    /** whether the rendering quality will be reduced while scrolling, resizing or animating. */
+    private boolean bAdaptiveQualityEnabled;
 	
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     // Initialization
@@ -222,7 +397,7 @@ public class Chat extends BasePanel
 		// Title
         //------------------------------------------------------------
 		
-        butClose.setIcon(IconFontSwing.buildIcon(GoogleMaterialDesignIcons.CLOSE, 16f, new Color(200, 200, 200)));
+        butClose.setIcon(GradientIconFontSwing.buildIcon(GoogleMaterialDesignIcons.CLOSE, 16f, new Color(200, 200, 200)));
         butClose.setVerticalAlignment(SwingConstants.CENTER);
         butClose.setHorizontalAlignment(SwingConstants.CENTER);
         butClose.setArc(28);
@@ -280,11 +455,11 @@ public class Chat extends BasePanel
             	
             	if (!StringUtil.isEmpty(sText))
             	{
-            		int iCount = liMessages.size();
+            		int iCount = panMessages.getMessageCount();
             		
 	            	fireMessage(text.getText());
 	            	
-	            	boolean bScroll = iCount != liMessages.size();
+	            	boolean bScroll = iCount != panMessages.getMessageCount();
 	            	
 	            	scpMessages.repaint();
 	            	
@@ -316,12 +491,7 @@ public class Chat extends BasePanel
             }
         });        
 		
-		flMessages.setMargins(new Insets(0, 0, 0, 0));
-		
-		panMessages = new ArcPanel();
 		panMessages.setBackground(new Color(0, 0, 0, 0));
-		panMessages.setMinimumSize(new Dimension(0, 0));
-        panMessages.setLayout(flMessages);
         
         JScrollBar sbVertical = new JScrollBar();
         sbVertical.setUI(new ReducedScrollBarUI());
@@ -343,6 +513,8 @@ public class Chat extends BasePanel
             @Override
             public void adjustmentValueChanged(AdjustmentEvent e) 
             {
+            	reduceQuality();
+            	
                 int value = scpMessages.getVerticalScrollBar().getValue();
                 int extent = scpMessages.getVerticalScrollBar().getModel().getExtent();
              
@@ -357,6 +529,15 @@ public class Chat extends BasePanel
                         fbaScrollDown.setVisible(true);
                     }
                 }
+                
+                if (isNearTop())
+                {
+                	scheduleLoadHistory();
+                }
+                else
+                {
+                	scheduleRetention();
+                }
             }
         });  
         
@@ -393,13 +574,39 @@ public class Chat extends BasePanel
                 {
                 	butSend.doClick();
                 }
-                else
-                {
-	            	//updates layout because of possible text growth (vertical)
-	                revalidate();
-                }
             }
         });
+        
+        //the text views are updated after our listener, so the line count will be checked later
+        text.getDocument().addDocumentListener(new DocumentListener()
+        {
+            @Override
+            public void insertUpdate(DocumentEvent pEvent)
+            {
+            	scheduleInputLines();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent pEvent)
+            {
+            	scheduleInputLines();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent pEvent)
+            {
+            }
+        });
+        
+        text.addComponentListener(new ComponentAdapter()
+        {
+        	@Override
+        	public void componentResized(ComponentEvent pEvent)
+        	{
+        		//the text wraps differently with another width
+        		updateInputLines();
+        	}
+        });
 		
 		JScrollPane scpText = new JScrollPane();
 		scpText.setOpaque(false);
@@ -421,7 +628,7 @@ public class Chat extends BasePanel
 		JVxBorderLayout blOptions = new JVxBorderLayout();
 		blOptions.setMargins(new Insets(0, 0, 0, 0));
 
-		JPanel panOptions = new JPanel(blOptions);
+		panOptions = new JPanel(blOptions);
 		panOptions.setOpaque(false);
 		
 		flOptionButtons.setMargins(new Insets(4, 4, 4, 4));
@@ -446,6 +653,78 @@ public class Chat extends BasePanel
 		
 		ascMessages = new ScrollAnimation(panMessages);
         fbaScrollDown = new FloatingComponentAnimation(butScrollDown);
+        
+        tiDrain = new Timer(FRAME_INTERVAL, new ActionListener()
+        {
+        	@Override
+        	public void actionPerformed(ActionEvent e)
+        	{
+        		drainPostedMessages();
+        	}
+        });
+        tiDrain.setRepeats(false);
+        //a start during a running drain must not be dropped
+        tiDrain.setCoalesce(false);
+        
+        tiResize = new Timer(RESIZE_DELAY, new ActionListener()
+        {
+        	@Override
+        	public void actionPerformed(ActionEvent e)
+        	{
+        		panMessages.setReflowDeferred(false);
+        	}
+        });
+        tiResize.setRepeats(false);
+        
+        tiQuality = new Timer(iQualityDelay, new ActionListener()
+        {
+        	@Override
+        	public void actionPerformed(ActionEvent e)
+        	{
+        		restoreQuality();
+        	}
+        });
+        tiQuality.setRepeats(false);
+        
+        //one listener for all messages
+        scpMessages.getViewport().addComponentListener(new ComponentAdapter()
+        {
+        	@Override
+        	public void componentResized(ComponentEvent pEvent)
+        	{
+        		reduceQuality();
+        		
+        		int iWidth = pEvent.getComponent().getWidth();
+        		
+        		if (iWidth != iMessagesWidth)
+        		{
+        			//the first size doesn't need a reflow
+        			if (iMessagesWidth > 0)
+        			{
+        				panMessages.setReflowDeferred(true);
+        				
+        				tiResize.restart();
+        			}
+        			
+        			iMessagesWidth = iWidth;
+        		}
+        	}
+        });
+        
+        lisRetention = new ChatModelListener()
+        {
+        	public void chatModelChanged(ChatModelEvent pEvent)
+        	{
+        		updateSizes(pEvent);
+        		
+        		if (pEvent.getType() == ChatModelEvent.EVENT_INSERTED)
+        		{
+        			scheduleRetention();
+        		}
+        	}
+        };
+        
+        panMessages.getModel().addChatModelListener(lisRetention);
 	}
 	
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
@@ -516,23 +795,20 @@ public class Chat extends BasePanel
 
         Graphics2D g2 = (Graphics2D) grphcs.create();
 
-        Border border = getBorder();
-        
-        Insets ins;
-        
-        if (border != null)
-        {
-        	ins = getBorder().getBorderInsets(this);
-        }
-        else
-        {
-        	ins = INSETS_0;
-        }
+        Insets ins = getBackgroundInsets();
         
         try
         {
-	        g2.setPaint(new GradientPaint(0, 0, new Color(58, 72, 85), width, 0, new Color(28, 38, 50)));
-        	g2.fillRect(0 + ins.left, 0 + ins.top, width - ins.left - ins.right, height - ins.top - ins.bottom);
+        	int iWidth = width - ins.left - ins.right;
+        	int iHeight = height - ins.top - ins.bottom;
+        	
+        	BufferedImage img = getBackgroundImage(ins, getScale(g2));
+        	
+        	if (img != null)
+        	{
+	        	//only the clip will be copied
+	        	g2.drawImage(img, ins.left, ins.top, iWidth, iHeight, null);
+        	}
         }
         finally
         {
@@ -542,6 +818,15 @@ public class Chat extends BasePanel
         super.paintComponent(grphcs);
     }	
 	
+	@Override
+	public void updateUI()
+	{
+		super.updateUI();
+		
+		//theme change
+		imgBackground = null;
+	}
+	
 	@Override
 	public void requestFocus()
 	{
@@ -566,7 +851,105 @@ public class Chat extends BasePanel
 	 */
 	private void scrollToBottom()
 	{
-    	ascMessages.scrollVertical(scpMessages, scpMessages.getVerticalScrollBar().getMaximum());
+		if (iUpdateCount > 0)
+		{
+			bScrollPending = true;
+		}
+		else
+		{
+			reduceQuality();
+			
+			ascMessages.scrollVertical(scpMessages, scpMessages.getVerticalScrollBar().getMaximum());
+		}
+	}
+	
+	/**
+	 * Schedules a line count check of the input text. Multiple document changes are coalesced
+	 * into one check.
+	 */
+	private void scheduleInputLines()
+	{
+		if (!bInputLinesScheduled)
+		{
+			bInputLinesScheduled = true;
+			
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					bInputLinesScheduled = false;
+					
+					updateInputLines();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Gets the wrapped line count of the input text at its current width.
+	 * 
+	 * @return the line count
+	 */
+	private int getInputLineCount()
+	{
+		Insets ins = text.getInsets();
+		
+		int iLineHeight = Math.max(1, text.getFontMetrics(text.getFont()).getHeight());
+		int iHeight = text.getPreferredSize().height - ins.top - ins.bottom;
+		
+		return Math.max(1, (iHeight + iLineHeight - 1) / iLineHeight);
+	}
+	
+	/**
+	 * Updates the layout of the options panel, if the wrapped line count of the input text
+	 * has changed. The rest of the chat won't be revalidated while typing.
+	 */
+	private void updateInputLines()
+	{
+		int iLines = getInputLineCount();
+		
+		if (iLines != iInputLines)
+		{
+			iInputLines = iLines;
+			
+			panOptions.revalidate();
+		}
+	}
+	
+	/**
+	 * Switches to fast rendering, if adaptive quality is enabled. The full quality will be 
+	 * restored if the chat is idle for the configured delay.
+	 * 
+	 * @see #setAdaptiveQualityEnabled(boolean)
+	 */
+	private void reduceQuality()
+	{
+		if (bAdaptiveQualityEnabled)
+		{
+			RenderQuality.setFastRendering(this, true);
+			
+			tiQuality.restart();
+		}
+	}
+	
+	/**
+	 * Switches back to full quality rendering and repaints the chat, if no animation is running
+	 * anymore.
+	 */
+	private void restoreQuality()
+	{
+		//animations of hidden chats are suspended
+		if (isShowing() && (ascMessages.isRunning() || fbaScrollDown.isRunning() || tiResize.isRunning()))
+		{
+			tiQuality.restart();
+		}
+		else if (RenderQuality.isFastRendering(this))
+		{
+			RenderQuality.setFastRendering(this, false);
+			
+			repaint();
+		}
 	}
 	
 	/**
@@ -620,333 +1003,1528 @@ public class Chat extends BasePanel
 	}
 	
 	/**
-	 * Sets the default foreground color of left messages.
+	 * Sets whether message bubbles will be painted with pre-rendered nine-slice images, one per 
+	 * background color. This is faster than filling the bubble shape, but the bubble edges may 
+	 * be less accurate with fractional display scaling.
 	 * 
-	 * @param pColor the foreground color
+	 * @param pEnabled <code>true</code> to paint images, <code>false</code> to fill the bubble shape
 	 */
-	public void setDefaultMessageForegroundLeft(Color pColor)
+	public void setBubbleImagesEnabled(boolean pEnabled)
 	{
-		colDefaultMessageForegroundLeft = pColor;
+		if (bBubbleImagesEnabled != pEnabled)
+		{
+			bBubbleImagesEnabled = pEnabled;
+			
+			panMessages.repaint();
+		}
 	}
-
+	
 	/**
-	 * Gets the default foreground color of left messages.
+	 * Gets whether message bubbles will be painted with pre-rendered images.
 	 * 
-	 * @return the foreground color
+	 * @return <code>true</code> if images will be painted
+	 * @see #setBubbleImagesEnabled(boolean)
 	 */
-	public Color getDefaultMessageForegroundLeft()
+	public boolean isBubbleImagesEnabled()
 	{
-		return colDefaultMessageForegroundLeft;
+		return bBubbleImagesEnabled;
 	}
 	
 	/**
-	 * Sets the default foreground color of right messages.
+	 * Sets whether the rendering quality will be reduced while scrolling, resizing or animating. 
+	 * The chat will be painted without antialiasing and repainted with full quality if it is idle
+	 * for the {@link #setAdaptiveQualityDelay(int) delay}.
 	 * 
-	 * @param pColor the foreground color
+	 * @param pEnabled <code>true</code> to reduce the quality, <code>false</code> to always paint 
+	 *                 with full quality
 	 */
-	public void setDefaultMessageForegroundRight(Color pColor)
+	public void setAdaptiveQualityEnabled(boolean pEnabled)
 	{
-		colDefaultMessageForegroundRight = pColor;
+		if (bAdaptiveQualityEnabled != pEnabled)
+		{
+			bAdaptiveQualityEnabled = pEnabled;
+			
+			if (!pEnabled)
+			{
+				tiQuality.stop();
+				
+				if (RenderQuality.isFastRendering(this))
+				{
+					RenderQuality.setFastRendering(this, false);
+					
+					repaint();
+				}
+			}
+		}
 	}
-
+	
 	/**
-	 * Gets the default foreground color of right messages.
+	 * Gets whether the rendering quality will be reduced while scrolling, resizing or animating.
 	 * 
-	 * @return the foreground color
+	 * @return <code>true</code> if the quality will be reduced
+	 * @see #setAdaptiveQualityEnabled(boolean)
 	 */
-	public Color getDefaultMessageForegroundRight()
+	public boolean isAdaptiveQualityEnabled()
 	{
-		return colDefaultMessageForegroundRight;
+		return bAdaptiveQualityEnabled;
 	}
 	
 	/**
-	 * Gets the left avatar.
+	 * Sets the idle time before the chat will be repainted with full quality, if adaptive quality 
+	 * is enabled.
 	 * 
-	 * @return the left avatar
+	 * @param pDelay the delay in milliseconds
+	 * @see #setAdaptiveQualityEnabled(boolean)
 	 */
-	public Image getAvatarLeft()
+	public void setAdaptiveQualityDelay(int pDelay)
 	{
-		return imgAvatarLeft;
+		iQualityDelay = Math.max(0, pDelay);
+		
+		tiQuality.setInitialDelay(iQualityDelay);
 	}
-
+	
 	/**
-	 * Sets the left avatar.
+	 * Gets the idle time before the chat will be repainted with full quality.
 	 * 
-	 * @param pImage the left avatar
+	 * @return the delay in milliseconds
 	 */
-	public void setAvatarLeft(Image pImage)
+	public int getAdaptiveQualityDelay()
 	{
-		imgAvatarLeft = pImage;
+		return iQualityDelay;
 	}
 	
 	/**
-	 * Gets the right avatar.
+	 * Sets the text length of large messages. Large messages will be collapsed to the first lines
+	 * and the user can expand them. The text of expanded large messages will be wrapped in parts, 
+	 * one part per frame, and the wrapped lines will be released when the message isn't shown 
+	 * anymore. The length applies to messages which are shown or changed afterwards.
 	 * 
-	 * @return the right avatar
+	 * @param pLength the minimum number of characters or <code>0</code> to show all messages 
+	 *                completely
+	 * @see #setCollapsedLineCount(int)
 	 */
-	public Image getAvatarRight()
+	public void setLargeMessageLength(int pLength)
 	{
-		return imgAvatarRight;
+		iLargeMessageLength = Math.max(0, pLength);
 	}
 	
 	/**
-	 * Sets the right avatar.
+	 * Gets the text length of large messages.
 	 * 
-	 * @param pImage the right avatar
+	 * @return the minimum number of characters or <code>0</code> if all messages are shown 
+	 *         completely
+	 * @see #setLargeMessageLength(int)
 	 */
-	public void setAvatarRight(Image pImage)
+	public int getLargeMessageLength()
 	{
-		imgAvatarRight = pImage;
+		return iLargeMessageLength;
 	}
-
+	
 	/**
-	 * Sets the typing icon for messages on the left.
+	 * Sets the number of lines which will be shown for collapsed large messages.
 	 * 
-	 * @param pIcon the icon
+	 * @param pLines the number of lines
+	 * @see #setLargeMessageLength(int)
 	 */
-	public void setTypingIconLeft(Icon pIcon)
+	public void setCollapsedLineCount(int pLines)
 	{
-		icoTypingLeft = pIcon;
+		iCollapsedLines = Math.max(1, pLines);
 	}
 	
 	/**
-	 * Gets the typing icon for messages on the left.
+	 * Gets the number of lines which will be shown for collapsed large messages.
 	 * 
-	 * @return the icon
+	 * @return the number of lines
 	 */
-	public Icon getTypingIconLeft()
+	public int getCollapsedLineCount()
 	{
-		return icoTypingLeft;
+		return iCollapsedLines;
 	}
 	
 	/**
-	 * Sets the typing icon for messages on the right.
+	 * Sets whether message bubbles will be rendered into images by background threads. Bubbles 
+	 * above and below the visible area and already painted bubbles will be rendered, the event 
+	 * dispatch thread only paints the images. The text of rendered bubbles will be wrapped 
+	 * without Swing text components and typing messages will always be painted.
 	 * 
-	 * @param pIcon the icon
+	 * @param pEnabled <code>true</code> to render bubbles in the background
 	 */
-	public void setTypingIconRight(Icon pIcon)
+	public void setBubblePrerenderingEnabled(boolean pEnabled)
 	{
-		icoTypingRight = pIcon;
+		if (bBubblePrerenderingEnabled != pEnabled)
+		{
+			bBubblePrerenderingEnabled = pEnabled;
+			
+			panMessages.revalidate();
+			panMessages.repaint();
+		}
 	}
 	
 	/**
-	 * Gets the typing icon for messages on the right.
+	 * Gets whether message bubbles will be rendered into images by background threads.
 	 * 
-	 * @return the icon
+	 * @return <code>true</code> if bubbles will be rendered in the background
+	 * @see #setBubblePrerenderingEnabled(boolean)
 	 */
-	public Icon getTypingIconRight()
+	public boolean isBubblePrerenderingEnabled()
 	{
-		return icoTypingRight;
+		return bBubblePrerenderingEnabled;
 	}
 	
 	/**
-	 * Sets whether the left is typing.
+	 * Sets whether scrolling copies already painted pixels. The message list paints the background
+	 * and is opaque, the viewport keeps a backbuffer and only the newly exposed area will be 
+	 * painted while scrolling.
 	 * 
-	 * @param pTyping <code>true</code> for typing
+	 * @param pEnabled <code>true</code> to copy pixels, <code>false</code> to repaint the whole
+	 *                 visible area
 	 */
-	public void setTypingLeft(boolean pTyping)
+	public void setBlitScrollEnabled(boolean pEnabled)
 	{
-		if (pTyping != bTypingLeft)
+		if (bBlitScrollEnabled != pEnabled)
 		{
-			bTypingLeft = pTyping;
+			bBlitScrollEnabled = pEnabled;
 			
-			if (bTypingLeft)
-			{
-				msgTypingLeft = new Message(this, sTypingMessage, Message.Type.Left);
-				msgTypingLeft.setTyping(true);
-				
-				addMessage(msgTypingLeft);
-			}
-			else
-			{
-				removeMessage(msgTypingLeft);
-			}
+			panMessages.setBackgroundPainted(pEnabled);
+			
+			//the scroll-down button overlaps the viewport, so blitting the window is not possible
+			scpMessages.getViewport().setScrollMode(pEnabled ? JViewport.BACKINGSTORE_SCROLL_MODE : JViewport.BLIT_SCROLL_MODE);
+			scpMessages.repaint();
 		}
 	}
 	
 	/**
-	 * Gets whether the left is typing.
+	 * Gets whether scrolling copies already painted pixels.
 	 * 
-	 * @return <code>true</code> if typing
+	 * @return <code>true</code> if pixels will be copied
+	 * @see #setBlitScrollEnabled(boolean)
 	 */
-	public boolean isTypingLeft()
+	public boolean isBlitScrollEnabled()
 	{
-		return bTypingLeft;
+		return bBlitScrollEnabled;
 	}
-
+	
 	/**
-	 * Sets whether the right is typing.
+	 * Sets the default foreground color of left messages.
 	 * 
-	 * @param pTyping <code>true</code> for typing
+	 * @param pColor the foreground color
 	 */
-	public void setTypingRight(boolean pTyping)
+	public void setDefaultMessageForegroundLeft(Color pColor)
 	{
-		if (pTyping != bTypingRight)
-		{
-			bTypingRight = pTyping;
-			
-			if (bTypingRight)
-			{
-				msgTypingRight = new Message(this, sTypingMessage, Message.Type.Right);
+		colDefaultMessageForegroundLeft = pColor;
+	}
+
+	/**
+	 * Gets the default foreground color of left messages.
+	 * 
+	 * @return the foreground color
+	 */
+	public Color getDefaultMessageForegroundLeft()
+	{
+		return colDefaultMessageForegroundLeft;
+	}
+	
+	/**
+	 * Sets the default foreground color of right messages.
+	 * 
+	 * @param pColor the foreground color
+	 */
+	public void setDefaultMessageForegroundRight(Color pColor)
+	{
+		colDefaultMessageForegroundRight = pColor;
+	}
+
+	/**
+	 * Gets the default foreground color of right messages.
+	 * 
+	 * @return the foreground color
+	 */
+	public Color getDefaultMessageForegroundRight()
+	{
+		return colDefaultMessageForegroundRight;
+	}
+	
+	/**
+	 * Gets the left avatar.
+	 * 
+	 * @return the left avatar
+	 */
+	public Image getAvatarLeft()
+	{
+		return imgAvatarLeft;
+	}
+
+	/**
+	 * Sets the left avatar.
+	 * 
+	 * @param pImage the left avatar
+	 */
+	public void setAvatarLeft(Image pImage)
+	{
+		imgAvatarLeft = pImage;
+	}
+	
+	/**
+	 * Gets the right avatar.
+	 * 
+	 * @return the right avatar
+	 */
+	public Image getAvatarRight()
+	{
+		return imgAvatarRight;
+	}
+	
+	/**
+	 * Sets the right avatar.
+	 * 
+	 * @param pImage the right avatar
+	 */
+	public void setAvatarRight(Image pImage)
+	{
+		imgAvatarRight = pImage;
+	}
+
+	/**
+	 * Gets the default typing icon. The icon is shared between all chats and repaints only
+	 * its own bounds, with limited frame rate and only if visible.
+	 * 
+	 * @param pLeft <code>true</code> for the icon on the left, <code>false</code> for the icon on the right
+	 * @return the icon
+	 */
+	private static Icon getDefaultTypingIcon(boolean pLeft)
+	{
+		Icon icon = pLeft ? icoDefaultTypingLeft : icoDefaultTypingRight;
+		
+		if (icon == null)
+		{
+			String sResource = pLeft ? "/com/sibvisions/components/chat/pulse_left.gif" : "/com/sibvisions/components/chat/pulse_right.gif";
+			
+			try
+			{
+				icon = new AnimatedIcon(Chat.class.getResource(sResource));
+			}
+			catch (IOException ioe)
+			{
+				LoggerFactory.getInstance(Chat.class).error(ioe);
+				
+				icon = JVxUtil.getIcon(sResource);
+			}
+			catch (RuntimeException re)
+			{
+				//e.g. invalid image metadata
+				LoggerFactory.getInstance(Chat.class).error(re);
+				
+				icon = JVxUtil.getIcon(sResource);
+			}
+			
+			if (pLeft)
+			{
+				icoDefaultTypingLeft = icon;
+			}
+			else
+			{
+				icoDefaultTypingRight = icon;
+			}
+		}
+		
+		return icon;
+	}
+	
+	/**
+	 * Sets the typing icon for messages on the left.
+	 * 
+	 * @param pIcon the icon
+	 */
+	public void setTypingIconLeft(Icon pIcon)
+	{
+		icoTypingLeft = pIcon;
+	}
+	
+	/**
+	 * Gets the typing icon for messages on the left.
+	 * 
+	 * @return the icon
+	 */
+	public Icon getTypingIconLeft()
+	{
+		return icoTypingLeft;
+	}
+	
+	/**
+	 * Sets the typing icon for messages on the right.
+	 * 
+	 * @param pIcon the icon
+	 */
+	public void setTypingIconRight(Icon pIcon)
+	{
+		icoTypingRight = pIcon;
+	}
+	
+	/**
+	 * Gets the typing icon for messages on the right.
+	 * 
+	 * @return the icon
+	 */
+	public Icon getTypingIconRight()
+	{
+		return icoTypingRight;
+	}
+	
+	/**
+	 * Sets whether the left is typing.
+	 * 
+	 * @param pTyping <code>true</code> for typing
+	 */
+	public void setTypingLeft(boolean pTyping)
+	{
+		if (pTyping != bTypingLeft)
+		{
+			bTypingLeft = pTyping;
+			
+			if (bTypingLeft)
+			{
+				msgTypingLeft = new Message(this, sTypingMessage, Message.Type.Left);
+				msgTypingLeft.setTyping(true);
+				
+				//typing messages are always the last messages
+				panMessages.addTailMessage(msgTypingLeft);
+				
+				scrollToBottom();
+			}
+			else
+			{
+				msgTypingLeft.setChat(null);
+				
+				panMessages.removeTailMessage(msgTypingLeft);
+				
+				msgTypingLeft = null;
+			}
+		}
+	}
+	
+	/**
+	 * Gets whether the left is typing.
+	 * 
+	 * @return <code>true</code> if typing
+	 */
+	public boolean isTypingLeft()
+	{
+		return bTypingLeft;
+	}
+
+	/**
+	 * Sets whether the right is typing.
+	 * 
+	 * @param pTyping <code>true</code> for typing
+	 */
+	public void setTypingRight(boolean pTyping)
+	{
+		if (pTyping != bTypingRight)
+		{
+			bTypingRight = pTyping;
+			
+			if (bTypingRight)
+			{
+				msgTypingRight = new Message(this, sTypingMessage, Message.Type.Right);
 				msgTypingRight.setTyping(true);
 				
-				addMessage(msgTypingRight);
+				//typing messages are always the last messages
+				panMessages.addTailMessage(msgTypingRight);
+				
+				scrollToBottom();
+			}
+			else
+			{
+				msgTypingRight.setChat(null);
+				
+				panMessages.removeTailMessage(msgTypingRight);
+				
+				msgTypingRight = null;
+			}
+		}
+	}
+	
+	/**
+	 * Sets the typing message.
+	 * 
+	 * @param pText the message
+	 */
+	public void setTypingMessage(String pText)
+	{
+		sTypingMessage = pText;
+	}
+	
+	/**
+	 * Gets the typing message.
+	 * 
+	 * @return the message
+	 */
+	public String getTypingMessage()
+	{
+		return sTypingMessage;
+	}
+	
+	/**
+	 * Gets whether the right is typing.
+	 * 
+	 * @return <code>true</code> if typing
+	 */
+	public boolean isTypingRight()
+	{
+		return bTypingRight;
+	}
+	
+	/**
+	 * Sets the gradient color of send button.
+	 * 
+	 * @param pStart the start color
+	 * @param pEnd the end color
+	 */
+	public void setSendButtonColor(Color pStart, Color pEnd)
+	{
+		butSend.setIcon(GradientIconFontSwing.buildIcon(GoogleMaterialDesignIcons.SEND, 20f, pStart, pEnd, GradientDirection.LeftToRight));
+	}
+	
+	/**
+	 * Sets the title. If given title is <code>null</code> no title bar will be shown.
+	 * 
+	 * @param pTitle the title
+	 */
+	public void setTitle(String pTitle)
+	{
+		sTitle = pTitle;
+		
+		lblTitle.setText(translate(sTitle));
+		
+		panTitle.setVisible(sTitle != null);
+		
+		panTitleBar.setVisible(panTitle.isVisible() || butClose.isVisible());
+	}
+	
+	/**
+	 * Gets the title.
+	 * 
+	 * @return the title
+	 */
+	public String getTitle()
+	{
+		return sTitle;
+	}
+	
+	/**
+	 * Sets whether close should be visible.
+	 * 
+	 * @param pVisible <code>true</code> to show close, <code>false</code> otherwise
+	 */
+	public void setCloseVisible(boolean pVisible)
+	{
+		butClose.setVisible(pVisible);
+		
+		panTitleBar.setVisible(panTitle.isVisible() || butClose.isVisible());
+	}
+	
+	/**
+	 * Gets whether close is visible.
+	 * 
+	 * @return <code>true</code> if visible, <code>false</code> otherwise
+	 */
+	public boolean isCloseVisible()
+	{
+		return butClose.isVisible();
+	}
+
+	/**
+	 * Adds a message to the chat.
+	 * 
+	 * @param pMessage the message
+	 */
+	public void addMessage(Message pMessage)
+	{
+		pMessage.setChat(this);
+		
+		//always appended because typing messages are not part of the model
+		panMessages.addMessage(panMessages.getMessageCount(), pMessage);
+    	
+    	scrollToBottom();
+	}
+	
+	/**
+	 * Adds all messages to the chat with one layout and at most one scroll animation.
+	 * 
+	 * @param pMessages the messages
+	 */
+	public void addMessages(Collection<Message> pMessages)
+	{
+		beginUpdate();
+		
+		try
+		{
+			for (Message msg : pMessages)
+			{
+				msg.setChat(this);
+			}
+			
+			panMessages.addMessages(panMessages.getMessageCount(), pMessages);
+			
+			scrollToBottom();
+		}
+		finally
+		{
+			endUpdate();
+		}
+	}
+	
+	/**
+	 * Posts a message to the chat. This method is thread-safe and can be called from any thread.
+	 * All messages which were posted within one frame will be added with one batched insert on
+	 * the event dispatch thread. If the queue is full, the message will be dropped.
+	 * 
+	 * @param pMessage the message
+	 * @return <code>true</code> if the message was queued, <code>false</code> if it was dropped
+	 * @see #getPostedMessageCount()
+	 * @see #getDroppedMessageCount()
+	 */
+	public boolean postMessage(ChatMessage pMessage)
+	{
+		if (!quePosted.offer(pMessage))
+		{
+			return false;
+		}
+		
+		if (bDrainScheduled.compareAndSet(false, true))
+		{
+			tiDrain.start();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Posts a message to the chat.
+	 * 
+	 * @param pText the text
+	 * @param pType the message type
+	 * @return <code>true</code> if the message was queued, <code>false</code> if it was dropped
+	 * @see #postMessage(ChatMessage)
+	 */
+	public boolean postMessage(String pText, Message.Type pType)
+	{
+		return postMessage(new ChatMessage(pText, pType));
+	}
+	
+	/**
+	 * Gets the number of posted messages which weren't added to the chat yet.
+	 * 
+	 * @return the queue depth
+	 */
+	public int getPostedMessageCount()
+	{
+		return quePosted.size();
+	}
+	
+	/**
+	 * Gets the number of posted messages which were dropped because the queue was full.
+	 * 
+	 * @return the number of dropped messages
+	 */
+	public long getDroppedMessageCount()
+	{
+		return quePosted.getDroppedCount();
+	}
+	
+	/**
+	 * Sets the maximum number of posted messages which weren't added to the chat yet.
+	 * 
+	 * @param pCapacity the queue capacity
+	 */
+	public void setPostCapacity(int pCapacity)
+	{
+		quePosted.setCapacity(pCapacity);
+	}
+	
+	/**
+	 * Gets the maximum number of posted messages which weren't added to the chat yet.
+	 * 
+	 * @return the queue capacity
+	 */
+	public int getPostCapacity()
+	{
+		return quePosted.getCapacity();
+	}
+	
+	/**
+	 * Adds all posted messages with one batched insert.
+	 */
+	private void drainPostedMessages()
+	{
+		//new messages will schedule a new drain
+		bDrainScheduled.set(false);
+		
+		ArrayUtil<ChatMessage> liPosted = new ArrayUtil<ChatMessage>(quePosted.size());
+		
+		ChatMessage msg;
+		
+		while ((msg = quePosted.poll()) != null)
+		{
+			liPosted.add(msg);
+		}
+		
+		if (!liPosted.isEmpty())
+		{
+			beginUpdate();
+			
+			try
+			{
+				ChatModel model = panMessages.getModel();
+				
+				model.addMessages(model.getMessageCount(), liPosted);
+				
+				scrollToBottom();
+			}
+			finally
+			{
+				endUpdate();
+			}
+		}
+		
+		//messages which were posted after polling, but didn't schedule a drain
+		if (!quePosted.isEmpty() && bDrainScheduled.compareAndSet(false, true))
+		{
+			tiDrain.restart();
+		}
+	}
+	
+	/**
+	 * Gets the insets of the background area.
+	 * 
+	 * @return the border insets
+	 */
+	private Insets getBackgroundInsets()
+	{
+		Border border = getBorder();
+		
+		if (border != null)
+		{
+			return border.getBorderInsets(this);
+		}
+		
+		return INSETS_0;
+	}
+	
+	/**
+	 * Gets the device scale of the given graphics, in quarter steps.
+	 * 
+	 * @param pGraphics the graphics
+	 * @return the scale multiplied by 4
+	 */
+	private static int getScale(Graphics2D pGraphics)
+	{
+		return Math.max(4, (int)Math.ceil(pGraphics.getTransform().getScaleX() * 4));
+	}
+	
+	/**
+	 * Gets the background image for the area inside the given insets. The image will be 
+	 * created if the size, the left inset, the chat width or the scale has changed.
+	 * 
+	 * @param pInsets the border insets
+	 * @param pScale the device scale, multiplied by 4
+	 * @return the image or <code>null</code> if the area is empty
+	 */
+	private BufferedImage getBackgroundImage(Insets pInsets, int pScale)
+	{
+		int iWidth = getWidth() - pInsets.left - pInsets.right;
+		int iHeight = getHeight() - pInsets.top - pInsets.bottom;
+		
+		if (iWidth <= 0 || iHeight <= 0)
+		{
+			return null;
+		}
+		
+    	int iImageWidth = iWidth * pScale / 4;
+    	int iImageHeight = iHeight * pScale / 4;
+    	
+    	if (imgBackground == null 
+    		|| imgBackground.getWidth() != iImageWidth 
+    		|| imgBackground.getHeight() != iImageHeight
+    		|| iBackgroundLeft != pInsets.left
+    		|| iBackgroundWidth != getWidth()
+    		|| iBackgroundScale != pScale)
+    	{
+    		//the gradient covers the whole width, like without insets
+    		imgBackground = createBackground(iImageWidth, iImageHeight, 
+    				                         -pInsets.left * pScale / 4f, (getWidth() - pInsets.left) * pScale / 4f);
+    		
+    		iBackgroundLeft = pInsets.left;
+    		iBackgroundWidth = getWidth();
+    		iBackgroundScale = pScale;
+    	}
+    	
+    	return imgBackground;
+	}
+	
+	/**
+	 * Paints the chat background behind the given component. The gradient is horizontal, so every
+	 * row of the background image is the same and the component may be taller than the chat, 
+	 * e.g. the scrolled message list.
+	 * 
+	 * @param pComponent the component inside the chat
+	 * @param pGraphics the graphics of the component
+	 */
+	void paintBackground(JComponent pComponent, Graphics pGraphics)
+	{
+		Rectangle rectClip = pGraphics.getClipBounds();
+		
+		if (rectClip == null)
+		{
+			rectClip = new Rectangle(0, 0, pComponent.getWidth(), pComponent.getHeight());
+		}
+		
+		Insets ins = getBackgroundInsets();
+		
+		int iScale = getScale((Graphics2D)pGraphics);
+		
+		BufferedImage img = getBackgroundImage(ins, iScale);
+		
+		if (img == null)
+		{
+			return;
+		}
+		
+		int iOffsetX = SwingUtilities.convertPoint(pComponent, 0, 0, this).x - ins.left;
+		
+		int iSourceLeft = Math.max(0, Math.min(img.getWidth(), (iOffsetX + rectClip.x) * iScale / 4));
+		int iSourceRight = Math.max(0, Math.min(img.getWidth(), (iOffsetX + rectClip.x + rectClip.width) * iScale / 4));
+		
+		//stretch the first row
+		pGraphics.drawImage(img, rectClip.x, rectClip.y, rectClip.x + rectClip.width, rectClip.y + rectClip.height, 
+				            iSourceLeft, 0, iSourceRight, 1, null);
+	}
+	
+	/**
+	 * Creates the background image with the gradient.
+	 * 
+	 * @param pWidth the image width
+	 * @param pHeight the image height
+	 * @param pStart the horizontal start of the gradient
+	 * @param pEnd the horizontal end of the gradient
+	 * @return the image
+	 */
+	private BufferedImage createBackground(int pWidth, int pHeight, float pStart, float pEnd)
+	{
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		
+		BufferedImage img;
+		
+		if (gc != null)
+		{
+			img = gc.createCompatibleImage(pWidth, pHeight, Transparency.OPAQUE);
+		}
+		else
+		{
+			img = new BufferedImage(pWidth, pHeight, BufferedImage.TYPE_INT_RGB);
+		}
+		
+		Graphics2D g2 = img.createGraphics();
+		
+		try
+		{
+			g2.setPaint(new GradientPaint(pStart, 0, COLOR_GRADIENT_START, pEnd, 0, COLOR_GRADIENT_END));
+			g2.fillRect(0, 0, pWidth, pHeight);
+		}
+		finally
+		{
+			g2.dispose();
+		}
+		
+		return img;
+	}
+	
+	/**
+	 * Starts an update of the chat. Layout, message updates (text, translation) and scrolling will
+	 * be deferred until the last {@link #endUpdate()}. Calls can be nested.
+	 */
+	public void beginUpdate()
+	{
+		iUpdateCount++;
+	}
+	
+	/**
+	 * Finishes an update of the chat. The last call does the deferred layout and scrolling.
+	 * 
+	 * @see #beginUpdate()
+	 */
+	public void endUpdate()
+	{
+		if (iUpdateCount > 0)
+		{
+			iUpdateCount--;
+			
+			if (iUpdateCount == 0)
+			{
+				panMessages.revalidate();
+				panMessages.repaint();
+				
+				if (bScrollPending)
+				{
+					bScrollPending = false;
+					
+					scrollToBottom();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets whether the chat is in update mode.
+	 * 
+	 * @return <code>true</code> if {@link #beginUpdate()} was called without {@link #endUpdate()}
+	 */
+	public boolean isUpdating()
+	{
+		return iUpdateCount > 0;
+	}
+	
+	/**
+	 * Adds a lightweight message to the chat. The view for the message will be created on demand.
+	 * 
+	 * @param pMessage the message
+	 */
+	public void addMessage(ChatMessage pMessage)
+	{
+		ChatModel model = panMessages.getModel();
+		
+		model.addMessage(model.getMessageCount(), pMessage);
+		
+		scrollToBottom();
+	}
+	
+	/**
+	 * Gets all available messages. A view will be created for every message of the model, so 
+	 * use {@link #getModel()} or {@link #getMessageCount()} if possible.
+	 * 
+	 * @return the messages
+	 */
+	public Message[] getMessages()
+	{
+		return panMessages.getMessages();
+	}
+	
+	/**
+	 * Gets the number of messages.
+	 * 
+	 * @return the number of messages
+	 */
+	public int getMessageCount()
+	{
+		return panMessages.getMessageCount();
+	}
+	
+	/**
+	 * Updates the model with the current state of the given message.
+	 * 
+	 * @param pMessage the changed message
+	 */
+	void messageChanged(Message pMessage)
+	{
+		panMessages.messageChanged(pMessage);
+	}
+	
+	/**
+	 * Sets the model. Typing messages are not part of the model and will be kept.
+	 * 
+	 * @param pModel the model
+	 */
+	public void setModel(ChatModel pModel)
+	{
+		ChatModel modelOld = panMessages.getModel();
+		
+		if (pModel != modelOld)
+		{
+			modelOld.removeChatModelListener(lisRetention);
+			
+			//evicted messages belong to the old model and will be loaded if it's used again
+			if (store != null)
+			{
+				whmpStores.put(modelOld, store);
+				
+				if (bStoreCreated)
+				{
+					setCreatedStores.add(store);
+				}
+			}
+			
+			store = whmpStores.remove(pModel);
+			bStoreCreated = store != null && setCreatedStores.remove(store);
+			bStoreFailed = false;
+			
+			resetHistory();
+			
+			panMessages.setModel(pModel);
+			
+			pModel.addChatModelListener(lisRetention);
+			
+			sizes.clear();
+			
+			insertSizes(pModel, 0, pModel.getMessageCount());
+			
+			scheduleRetention();
+			
+			if (getOldestMessage() == null)
+			{
+				scheduleLoadHistory();
+			}
+		}
+	}
+	
+	/**
+	 * Gets the model.
+	 * 
+	 * @return the model
+	 */
+	public ChatModel getModel()
+	{
+		return panMessages.getModel();
+	}
+	
+	/**
+	 * Sets the maximum number of messages in the model. Older messages will be evicted to the
+	 * message store and loaded again if the user scrolls to the top.
+	 * 
+	 * @param pMaxMessages the maximum number of messages or <code>0</code> for unlimited history
+	 * @see #setMessageStore(MessageStore)
+	 */
+	public void setMaxMessages(int pMaxMessages)
+	{
+		iMaxMessages = Math.max(0, pMaxMessages);
+		
+		scheduleRetention();
+	}
+	
+	/**
+	 * Gets the maximum number of messages in the model.
+	 * 
+	 * @return the maximum number of messages or <code>0</code> for unlimited history
+	 */
+	public int getMaxMessages()
+	{
+		return iMaxMessages;
+	}
+	
+	/**
+	 * Sets the maximum estimated memory size of all messages in the model. Older messages will 
+	 * be evicted to the message store.
+	 * 
+	 * @param pMaxBytes the size in bytes or <code>0</code> for no limit
+	 * @see ChatMessage#getEstimatedSize()
+	 */
+	public void setMaxMessageBytes(long pMaxBytes)
+	{
+		lMaxMessageBytes = Math.max(0, pMaxBytes);
+		
+		scheduleRetention();
+	}
+	
+	/**
+	 * Gets the maximum estimated memory size of all messages in the model.
+	 * 
+	 * @return the size in bytes or <code>0</code> for no limit
+	 */
+	public long getMaxMessageBytes()
+	{
+		return lMaxMessageBytes;
+	}
+	
+	/**
+	 * Sets the store for evicted messages of the current model. If no store is set, a temporary 
+	 * store will be created on demand. Every model keeps its store, if another model is set.
+	 * The store of a model is closed by the caller, except temporary stores which are deleted
+	 * on exit.
+	 * 
+	 * @param pStore the store
+	 */
+	public void setMessageStore(MessageStore pStore)
+	{
+		if (pStore != store)
+		{
+			if (bStoreCreated)
+			{
+				closeStore();
+			}
+			
+			store = pStore;
+			bStoreCreated = false;
+			bStoreFailed = false;
+		}
+	}
+	
+	/**
+	 * Gets the store for evicted messages of the current model.
+	 * 
+	 * @return the store or <code>null</code> if no message was evicted and no store was set
+	 */
+	public MessageStore getMessageStore()
+	{
+		return store;
+	}
+	
+	/**
+	 * Closes the store, created by the chat.
+	 */
+	private void closeStore()
+	{
+		try
+		{
+			store.close();
+		}
+		catch (IOException ioe)
+		{
+			LoggerFactory.getInstance(Chat.class).error(ioe);
+		}
+		
+		store = null;
+		bStoreCreated = false;
+	}
+	
+	/**
+	 * Schedules the retention check of the model.
+	 */
+	private void scheduleRetention()
+	{
+		if (!bRetentionScheduled && (iMaxMessages > 0 || lMaxMessageBytes > 0))
+		{
+			bRetentionScheduled = true;
+			
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				public void run()
+				{
+					bRetentionScheduled = false;
+					
+					applyRetention();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Evicts the oldest messages to the message store if the model exceeds the limits. Messages
+	 * near the visible area won't be evicted. The messages will be written in the background and
+	 * removed from the model afterwards.
+	 */
+	private void applyRetention()
+	{
+		if (swStore != null || bStoreFailed)
+		{
+			//checked again when the store is ready
+			return;
+		}
+		
+		ChatModel model = panMessages.getModel();
+		
+		int iCount = model.getMessageCount();
+		int iEvict = 0;
+		
+		if (iMaxMessages > 0 && iCount > iMaxMessages)
+		{
+			iEvict = iCount - iMaxMessages;
+		}
+		
+		if (lMaxMessageBytes > 0)
+		{
+			long lExcess = sizes.getTotal() - lMaxMessageBytes;
+			
+			if (lExcess > 0)
+			{
+				//the oldest messages with a size >= the excess
+				int iIndex = sizes.indexOf(lExcess);
+				
+				if (sizes.getSum(iIndex) < lExcess)
+				{
+					iIndex++;
+				}
+				
+				iEvict = Math.max(iEvict, iIndex);
+			}
+		}
+		
+		//keep one page above the visible messages, without a viewport nothing is visible
+		if (panMessages.isInViewport())
+		{
+			iEvict = Math.min(iEvict, panMessages.getFirstVisibleIndex() - EVICTION_PAGE_SIZE);
+		}
+		
+		if (iEvict > 0)
+		{
+			ArrayUtil<ChatMessage> liEvicted = new ArrayUtil<ChatMessage>(iEvict);
+			
+			for (int i = 0; i < iEvict; i++)
+			{
+				liEvicted.add(model.getMessage(i));
 			}
-			else
+			
+			if (store == null)
 			{
-				removeMessage(msgTypingRight);
+				try
+				{
+					store = new MessageStore();
+					bStoreCreated = true;
+				}
+				catch (IOException ioe)
+				{
+					LoggerFactory.getInstance(Chat.class).error(ioe);
+					
+					bStoreFailed = true;
+					
+					return;
+				}
 			}
+			
+			swStore = new StoreWorker(model, store, liEvicted);
+			swStore.execute();
 		}
 	}
 	
 	/**
-	 * Sets the typing message.
+	 * Handles the result of a store request.
 	 * 
-	 * @param pText the message
+	 * @param pWorker the finished request
+	 * @param pMessages the written or read messages or <code>null</code> if the request failed
 	 */
-	public void setTypingMessage(String pText)
+	private void storeDone(StoreWorker pWorker, List<ChatMessage> pMessages)
 	{
-		sTypingMessage = pText;
+		swStore = null;
+		
+		ChatModel model = pWorker.model;
+		
+		if (pWorker.liWrite != null)
+		{
+			if (pMessages == null)
+			{
+				//don't lose messages, they are still in the model
+				if (pWorker.store == store)
+				{
+					bStoreFailed = true;
+				}
+			}
+			else
+			{
+				int iWritten = pMessages.size();
+				
+				boolean bOldest = model.getMessageCount() >= iWritten;
+				
+				for (int i = 0; i < iWritten && bOldest; i++)
+				{
+					bOldest = model.getMessage(i) == pMessages.get(i);
+				}
+				
+				if (bOldest)
+				{
+					model.removeMessages(0, iWritten);
+				}
+				else
+				{
+					//the model was changed in the meantime and still contains the messages
+					swStore = new StoreWorker(model, pWorker.store, iWritten, false);
+					swStore.execute();
+					
+					return;
+				}
+			}
+		}
+		else if (pWorker.bInsert && pMessages != null && !pMessages.isEmpty())
+		{
+			model.addMessages(0, pMessages);
+		}
+		
+		scheduleRetention();
+		
+		if (isNearTop())
+		{
+			scheduleLoadHistory();
+		}
 	}
 	
 	/**
-	 * Gets the typing message.
+	 * Updates the estimated sizes of the model messages.
 	 * 
-	 * @return the message
+	 * @param pEvent the model change
 	 */
-	public String getTypingMessage()
+	private void updateSizes(ChatModelEvent pEvent)
 	{
-		return sTypingMessage;
+		int iFirst = pEvent.getFirstIndex();
+		int iLength = pEvent.getLastIndex() - iFirst + 1;
+		
+		switch (pEvent.getType())
+		{
+			case ChatModelEvent.EVENT_INSERTED:
+				insertSizes(panMessages.getModel(), iFirst, iLength);
+				break;
+				
+			case ChatModelEvent.EVENT_REMOVED:
+				sizes.remove(iFirst, iLength);
+				break;
+				
+			case ChatModelEvent.EVENT_CHANGED:
+				ChatModel model = panMessages.getModel();
+				
+				for (int i = iFirst, cnt = iFirst + iLength; i < cnt; i++)
+				{
+					sizes.set(i, getEstimatedSize(model.getMessage(i)));
+				}
+				break;
+				
+			default:
+				//ignore
+		}
 	}
 	
 	/**
-	 * Gets whether the right is typing.
+	 * Inserts the estimated sizes of new messages.
 	 * 
-	 * @return <code>true</code> if typing
+	 * @param pModel the model
+	 * @param pIndex the first position
+	 * @param pLength the number of messages
 	 */
-	public boolean isTypingRight()
+	private void insertSizes(ChatModel pModel, int pIndex, int pLength)
 	{
-		return bTypingRight;
+		sizes.insert(pIndex, pLength, 0);
+		
+		for (int i = pIndex, cnt = pIndex + pLength; i < cnt; i++)
+		{
+			sizes.set(i, getEstimatedSize(pModel.getMessage(i)));
+		}
 	}
 	
 	/**
-	 * Sets the gradient color of send button.
+	 * Gets the estimated size of a message.
 	 * 
-	 * @param pStart the start color
-	 * @param pEnd the end color
+	 * @param pMessage the message
+	 * @return the size in bytes
 	 */
-	public void setSendButtonColor(Color pStart, Color pEnd)
+	private static int getEstimatedSize(ChatMessage pMessage)
 	{
-		butSend.setIcon(GradientIconFontSwing.buildIcon(GoogleMaterialDesignIcons.SEND, 20f, pStart, pEnd, GradientDirection.LeftToRight));
+		return (int)Math.min(Integer.MAX_VALUE / 2, pMessage.getEstimatedSize());
 	}
 	
 	/**
-	 * Sets the title. If given title is <code>null</code> no title bar will be shown.
+	 * Sets the provider for older messages. The provider will be asked for the next page, if the
+	 * user scrolls near the top of the chat. If the model is empty, the newest messages will be
+	 * requested immediately.
 	 * 
-	 * @param pTitle the title
+	 * @param pProvider the provider or <code>null</code> if no history is available
 	 */
-	public void setTitle(String pTitle)
+	public void setHistoryProvider(HistoryProvider pProvider)
 	{
-		sTitle = pTitle;
-		
-		lblTitle.setText(translate(sTitle));
-		
-		panTitle.setVisible(sTitle != null);
-		
-		panTitleBar.setVisible(panTitle.isVisible() || butClose.isVisible());
+		if (pProvider != history)
+		{
+			resetHistory();
+			
+			history = pProvider;
+			
+			if (getOldestMessage() == null)
+			{
+				scheduleLoadHistory();
+			}
+		}
 	}
 	
 	/**
-	 * Gets the title.
+	 * Gets the provider for older messages.
 	 * 
-	 * @return the title
+	 * @return the provider or <code>null</code> if no history is available
 	 */
-	public String getTitle()
+	public HistoryProvider getHistoryProvider()
 	{
-		return sTitle;
+		return history;
 	}
 	
 	/**
-	 * Sets whether close should be visible.
-	 * 
-	 * @param pVisible <code>true</code> to show close, <code>false</code> otherwise
+	 * Forgets the state of the history provider. Running requests will be ignored.
 	 */
-	public void setCloseVisible(boolean pVisible)
+	private void resetHistory()
 	{
-		butClose.setVisible(pVisible);
-		
-		panTitleBar.setVisible(panTitle.isVisible() || butClose.isVisible());
+		hwLoad = null;
+		liPrefetched = null;
+		cmsgPrefetched = null;
+		bHistoryComplete = false;
 	}
 	
 	/**
-	 * Gets whether close is visible.
-	 * 
-	 * @return <code>true</code> if visible, <code>false</code> otherwise
+	 * Schedules loading of evicted messages or older messages from the history provider.
 	 */
-	public boolean isCloseVisible()
+	private void scheduleLoadHistory()
 	{
-		return butClose.isVisible();
+		if (!bLoadScheduled 
+			&& ((store != null && (swStore != null || store.size() > 0)) || (history != null && !bHistoryComplete)))
+		{
+			bLoadScheduled = true;
+			
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				public void run()
+				{
+					bLoadScheduled = false;
+					
+					loadHistory();
+				}
+			});
+		}
 	}
-
+	
 	/**
-	 * Adds a message to the chat.
-	 * 
-	 * @param pMessage the message
+	 * Inserts the next page of older messages at the top of the model. Evicted messages will be
+	 * loaded from the store first, because they are newer than the messages of the history 
+	 * provider. The visible messages will keep their position.
 	 */
-	public void addMessage(Message pMessage)
+	private void loadHistory()
 	{
-		pMessage.setChat(this);
-		
-		int iPos = -1;
-		
-		if (pMessage.getType() == Type.Left)
+		if (store != null && (swStore != null || store.size() > 0))
 		{
-			if (msgTypingLeft != null)
+			//checked again when the store is ready
+			if (swStore == null)
 			{
-				iPos = liMessages.indexOf(msgTypingLeft);
+				swStore = new StoreWorker(panMessages.getModel(), store, EVICTION_PAGE_SIZE, true);
+				swStore.execute();
 			}
 		}
-		else
+		else if (history != null && !bHistoryComplete)
 		{
-			if (msgTypingRight != null)
+			ChatMessage cmsgOldest = getOldestMessage();
+			
+			if (liPrefetched != null && cmsgPrefetched == cmsgOldest)
+			{
+				List<ChatMessage> liPage = liPrefetched;
+				
+				liPrefetched = null;
+				cmsgPrefetched = null;
+				
+				insertHistory(liPage);
+			}
+			else if (hwLoad == null || hwLoad.cmsgOldest != cmsgOldest)
+			{
+				liPrefetched = null;
+				cmsgPrefetched = null;
+				
+				hwLoad = new HistoryWorker(cmsgOldest, true);
+				hwLoad.execute();
+			}
+			else
 			{
-				iPos = liMessages.indexOf(msgTypingRight);
+				//the prefetch is already running
+				hwLoad.bInsert = true;
 			}
 		}
-		
-		if (iPos < 0)
+	}
+	
+	/**
+	 * Inserts a page of older messages at the top of the model and prefetches the next page.
+	 * 
+	 * @param pPage the messages
+	 */
+	private void insertHistory(List<ChatMessage> pPage)
+	{
+		if (pPage.isEmpty())
 		{
-			liMessages.add(pMessage);
+			bHistoryComplete = true;
 			
-			iPos = liMessages.size();
-			
-			panMessages.add(pMessage, flMessages.createConstraint(0, iPos, -1, iPos));
+			return;
 		}
-		else
+		
+		ChatModel model = panMessages.getModel();
+		
+		boolean bEmpty = model.getMessageCount() == 0;
+		
+		model.addMessages(0, pPage);
+		
+		if (bEmpty)
 		{
-			liMessages.add(iPos, pMessage);
-
-			//update constraints
-			
-			panMessages.add(pMessage, flMessages.createConstraint(0, iPos, -1, iPos));
-
-			for (int i = iPos, j = i + 1, cnt = liMessages.size(); i < cnt; i++, j++)
-			{
-				flMessages.setConstraint(liMessages.get(i), flMessages.createConstraint(0, j, -1, j));
-			}
+			scrollToBottom();
 		}
-    	
-    	scrollToBottom();
+		
+		hwLoad = new HistoryWorker(getOldestMessage(), false);
+		hwLoad.execute();
 	}
 	
 	/**
-	 * Gets all available messages.
+	 * Gets whether the visible area is near the top of the messages.
 	 * 
-	 * @return the messages
+	 * @return <code>true</code> if the distance to the top is less than the visible height,
+	 *         <code>false</code> if nothing is visible
 	 */
-	public Message[] getMessages()
+	private boolean isNearTop()
+	{
+		if (!panMessages.isInViewport())
+		{
+			return false;
+		}
+		
+		JScrollBar sbVertical = scpMessages.getVerticalScrollBar();
+		
+		return sbVertical.getValue() < sbVertical.getModel().getExtent();
+	}
+	
+	/**
+	 * Gets the oldest message of the model.
+	 * 
+	 * @return the message or <code>null</code> if the model is empty
+	 */
+	private ChatMessage getOldestMessage()
+	{
+		ChatModel model = panMessages.getModel();
+		
+		if (model.getMessageCount() == 0)
+		{
+			return null;
+		}
+		
+		return model.getMessage(0);
+	}
+	
+	/**
+	 * Handles the result of a history request.
+	 * 
+	 * @param pWorker the finished request
+	 * @param pPage the loaded messages or <code>null</code> if loading failed
+	 */
+	private void historyLoaded(HistoryWorker pWorker, List<ChatMessage> pPage)
 	{
-		return liMessages.toArray(new Message[liMessages.size()]);
+		if (pWorker != hwLoad)
+		{
+			//outdated request
+			return;
+		}
+		
+		hwLoad = null;
+		
+		if (pPage == null)
+		{
+			return;
+		}
+		
+		if (pWorker.cmsgOldest != getOldestMessage())
+		{
+			//the model was changed in the meantime
+			if (pWorker.bInsert)
+			{
+				scheduleLoadHistory();
+			}
+			
+			return;
+		}
+		
+		if (pWorker.bInsert || isNearTop())
+		{
+			insertHistory(pPage);
+		}
+		else if (pPage.isEmpty())
+		{
+			bHistoryComplete = true;
+		}
+		else
+		{
+			liPrefetched = pPage;
+			cmsgPrefetched = pWorker.cmsgOldest;
+		}
 	}
 	
 	/**
@@ -958,9 +2536,7 @@ public class Chat extends BasePanel
 	{
 		pMessage.setChat(null);
 		
-		liMessages.remove(pMessage);
-		
-		panMessages.remove(pMessage);
+		panMessages.removeMessage(pMessage);
 	}
 
 	/**
@@ -1050,7 +2626,7 @@ public class Chat extends BasePanel
 		
 		if (pIcon != null)
 		{
-			but.setIcon(IconFontSwing.buildIcon(pIcon, 16f, colWhite));
+			but.setIcon(GradientIconFontSwing.buildIcon(pIcon, 16f, colWhite));
 		}
 		
 		if (pText != null)
@@ -1210,6 +2786,181 @@ public class Chat extends BasePanel
     // Subclass definition
     //****************************************************************
 	
+	/**
+	 * The <code>HistoryWorker</code> loads a page of older messages from the history provider in
+	 * the background.
+	 * 
+	 * @author René Jahn
+	 */
+	private final class HistoryWorker extends SwingWorker<List<ChatMessage>, Void>
+	{
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Class members
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/** the provider. */
+		private HistoryProvider provider;
+		
+		/** the oldest message of the model, when the request was started. */
+		private ChatMessage cmsgOldest;
+		
+		/** whether the page should be inserted immediately. */
+		private boolean bInsert;
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Initialization
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/**
+		 * Creates a new instance of <code>HistoryWorker</code>.
+		 * 
+		 * @param pOldest the oldest message of the model
+		 * @param pInsert <code>true</code> to insert the page immediately, <code>false</code> to
+		 *                prefetch the page
+		 */
+		private HistoryWorker(ChatMessage pOldest, boolean pInsert)
+		{
+			provider = history;
+			cmsgOldest = pOldest;
+			bInsert = pInsert;
+		}
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Overwritten methods
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		@Override
+		protected List<ChatMessage> doInBackground() throws Exception
+		{
+			List<ChatMessage> liPage = provider.loadHistory(cmsgOldest, HISTORY_PAGE_SIZE);
+			
+			if (liPage == null)
+			{
+				return Collections.emptyList();
+			}
+			
+			return liPage;
+		}
+		
+		@Override
+		protected void done()
+		{
+			List<ChatMessage> liPage = null;
+			
+			try
+			{
+				liPage = get();
+			}
+			catch (Exception e)
+			{
+				LoggerFactory.getInstance(Chat.class).error(e);
+			}
+			
+			historyLoaded(this, liPage);
+		}
+		
+	}	// HistoryWorker
+	
+	/**
+	 * The <code>StoreWorker</code> writes evicted messages to the message store or reads the
+	 * newest stored messages in the background. Only one request per chat runs at a time, so
+	 * the order of the stored messages is kept.
+	 * 
+	 * @author René Jahn
+	 */
+	private final class StoreWorker extends SwingWorker<List<ChatMessage>, Void>
+	{
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Class members
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/** the model of the messages. */
+		private ChatModel model;
+		
+		/** the store. */
+		private MessageStore store;
+		
+		/** the messages to write or <code>null</code> to read messages. */
+		private List<ChatMessage> liWrite;
+		
+		/** the number of messages to read. */
+		private int iRead;
+		
+		/** whether the read messages should be inserted into the model. */
+		private boolean bInsert;
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Initialization
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/**
+		 * Creates a new instance of <code>StoreWorker</code> which writes messages.
+		 * 
+		 * @param pModel the model of the messages
+		 * @param pStore the store
+		 * @param pMessages the oldest messages of the model
+		 */
+		private StoreWorker(ChatModel pModel, MessageStore pStore, List<ChatMessage> pMessages)
+		{
+			model = pModel;
+			store = pStore;
+			liWrite = pMessages;
+		}
+		
+		/**
+		 * Creates a new instance of <code>StoreWorker</code> which reads and removes the newest
+		 * stored messages.
+		 * 
+		 * @param pModel the model of the messages
+		 * @param pStore the store
+		 * @param pCount the maximum number of messages
+		 * @param pInsert <code>true</code> to insert the messages into the model, 
+		 *                <code>false</code> to discard them
+		 */
+		private StoreWorker(ChatModel pModel, MessageStore pStore, int pCount, boolean pInsert)
+		{
+			model = pModel;
+			store = pStore;
+			iRead = pCount;
+			bInsert = pInsert;
+		}
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Overwritten methods
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		@Override
+		protected List<ChatMessage> doInBackground() throws Exception
+		{
+			if (liWrite != null)
+			{
+				store.append(liWrite);
+				
+				return liWrite;
+			}
+			
+			return store.readLast(iRead);
+		}
+		
+		@Override
+		protected void done()
+		{
+			List<ChatMessage> liMessages = null;
+			
+			try
+			{
+				liMessages = get();
+			}
+			catch (Exception e)
+			{
+				LoggerFactory.getInstance(Chat.class).error(e);
+			}
+			
+			storeDone(this, liMessages);
+		}
+		
+	}	// StoreWorker
+	
 	/**
 	 * The <code>ReducedScrollBarUI</code> should look like a modern scrollbar with small scrollbars
 	 * and no navigation buttons.
@@ -17,23 +17,42 @@ package com.sibvisions.components.chat;
 
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Container;
+import java.awt.Cursor;
 import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
 import java.awt.Insets;
 import java.awt.RenderingHints;
-import java.awt.event.ComponentAdapter;
-import java.awt.event.ComponentEvent;
+import java.awt.Shape;
+import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.GeneralPath;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import javax.swing.BorderFactory;
 import javax.swing.Icon;
-import javax.swing.UIManager;
+import javax.swing.JLabel;
 
+import com.sibvisions.components.chat.BubbleRenderer.Request;
+import com.sibvisions.components.chat.animation.FrameClock;
 import com.sibvisions.components.chat.component.Avatar;
 import com.sibvisions.components.chat.component.BasePanel;
-import com.sibvisions.components.chat.component.TextPane;
+import com.sibvisions.components.chat.component.RenderQuality;
+import com.sibvisions.components.chat.component.TextLabel;
+import com.sibvisions.components.chat.model.ChatMessage;
 import com.sibvisions.rad.ui.swing.ext.layout.JVxBorderLayout;
 import com.sibvisions.rad.ui.swing.ext.layout.JVxFormLayout;
 
@@ -57,6 +76,12 @@ public class Message extends BasePanel
 		Right
 	};
 	
+	/** the number of size cache hits. */
+	private static long lSizeCacheHits;
+	
+	/** the number of size cache misses. */
+	private static long lSizeCacheMisses;
+	
 	/** the chat. */
 	private Chat chat;
 
@@ -68,9 +93,6 @@ public class Message extends BasePanel
 	
 	/** the avatar. */
 	private Avatar avatar;
-	
-	/** the component resize listener. */
-	private ComponentAdapter listener;
 
 	/** the message type. */
 	private Type type;
@@ -84,9 +106,45 @@ public class Message extends BasePanel
 	/** the foreground color. */
 	private Color colForeground;
 	
+	/** the lightweight record of the current state. */
+	private ChatMessage cmsg;
+	
+	/** the creation time. */
+	private long lTimestamp;
+	
+	/** the font of the last measurement. */
+	private Font fntMeasured;
+	
+	/** the revision of the bubble content, changes with every update of text, icon or colors. */
+	private int iRevision;
+	
+	/** the revision of the last measurement. */
+	private int iMeasuredRevision = -1;
+	
+	/** the available width of the last measurement. */
+	private int iMeasuredWidth;
+	
+	/** the bubble width limit of the last measurement. */
+	private int iMeasuredMaxWidth;
+	
+	/** the height of the last measurement. */
+	private int iMeasuredHeight;
+	
 	/** whether the message is a typing message. */
 	private boolean isTyping;
 	
+	/** whether the bubble update was deferred. */
+	private boolean bUpdatePending;
+	
+	/** the appended text which is not shown yet. */
+	private StringBuilder sbAppended;
+	
+	/** the pulse listener for showing appended text with the next frame. */
+	private ActionListener lisAppend;
+	
+	/** whether a large message is expanded. */
+	private boolean bExpanded;
+	
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     // Initialization
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~    
@@ -123,6 +181,7 @@ public class Message extends BasePanel
 	{
 		text = pText;
 		type = pType;
+		lTimestamp = System.currentTimeMillis();
 		
 		flThis.setMargins(new Insets(5, 0, 5, 0));
 		
@@ -145,18 +204,29 @@ public class Message extends BasePanel
 		}
 		
 		setChat(pChat);
-		
-		listener = new ComponentAdapter() 
-		{
-			public void componentResized(ComponentEvent pEvent)
-			{
-				updateBubbleMaxSize(pEvent.getComponent());
-				
-				bubble.revalidate();
-			}
-		};		
 	}
 
+	/**
+	 * Creates a new instance of <code>Message</code> as view for a model message.
+	 * 
+	 * @param pChat the chat
+	 * @param pMessage the model message
+	 */
+	Message(Chat pChat, ChatMessage pMessage)
+	{
+		this(null, pMessage.getText(), pMessage.getType());
+		
+		lTimestamp = pMessage.getTimestamp();
+		colBackground = pMessage.getBackground();
+		colForeground = pMessage.getForeground();
+		isTyping = pMessage.isTyping();
+		bExpanded = pMessage.isExpanded();
+		
+		cmsg = pMessage;
+		
+		setChat(pChat);
+	}
+	
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     // Overwritten methods
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~    
@@ -165,21 +235,11 @@ public class Message extends BasePanel
 	public void addNotify()
 	{
 		super.addNotify();
-
-		Component comp = getParent().getParent();
-
-		//the initial size should be correct
-		updateBubbleMaxSize(comp);
-		
-		comp.addComponentListener(listener);
-	}
-	
-	@Override
-	public void removeNotify()
-	{
-		super.removeNotify();
 		
-		getParent().getParent().removeComponentListener(listener);
+		validateBubble();
+
+		//the initial size should be correct, resizing is handled by the message list
+		updateBubbleMaxSize(getParent().getWidth());
 	}
 	
 	@Override
@@ -189,7 +249,9 @@ public class Message extends BasePanel
 		{
 			colForeground = pColor;
 	
-			bubble.update();
+			updateBubble();
+			
+			fireChanged();
 		}
 
 		super.setForeground(pColor);
@@ -208,7 +270,9 @@ public class Message extends BasePanel
 		{
 			colBackground = pColor;
 		
-			bubble.update();
+			updateBubble();
+			
+			fireChanged();
 		}
 		
 		super.setBackground(pColor);
@@ -270,7 +334,7 @@ public class Message extends BasePanel
 			avatar.setVisible(false);
 		}
 		
-		bubble.update();
+		updateBubble();
 	}
 	
 	/**
@@ -290,21 +354,69 @@ public class Message extends BasePanel
 	 */
 	public void setText(String pText)
 	{
+		discardAppendedText();
+		
 		text = pText;
 		
-		bubble.update();
+		updateBubble();
+		
+		fireChanged();
 	}
 
 	/**
-	 * Gets the text.
+	 * Gets the text, including appended text which is not shown yet.
 	 * 
 	 * @return the text
 	 */
 	public String getText()
 	{
+		if (sbAppended != null && sbAppended.length() > 0)
+		{
+			return text != null ? text + sbAppended : sbAppended.toString();
+		}
+		
 		return text;
 	}
 	
+	/**
+	 * Appends text, e.g. a streamed reply which arrives in small parts. All parts which are 
+	 * appended within one frame will be shown together, with one layout and repaint. Only the 
+	 * last paragraph of the text will be wrapped again.
+	 * 
+	 * @param pText the text to append
+	 */
+	public void appendText(CharSequence pText)
+	{
+		if (pText == null || pText.length() == 0)
+		{
+			return;
+		}
+		
+		if (sbAppended == null)
+		{
+			sbAppended = new StringBuilder();
+		}
+		
+		sbAppended.append(pText);
+		
+		if (lisAppend == null)
+		{
+			lisAppend = new ActionListener()
+			{
+				@Override
+				public void actionPerformed(ActionEvent pEvent)
+				{
+					FrameClock.removePulseListener(this);
+					
+					showAppendedText();
+				}
+			};
+		}
+		
+		//all streaming messages share the frame clock
+		FrameClock.addPulseListener(lisAppend);
+	}
+	
 	/**
 	 * Sets whether the message is a typing message.
 	 * 
@@ -314,7 +426,9 @@ public class Message extends BasePanel
 	{
 		isTyping = pTyping;
 		
-		bubble.update();
+		updateBubble();
+		
+		fireChanged();
 	}
 	
 	/**
@@ -327,16 +441,353 @@ public class Message extends BasePanel
 		return isTyping;
 	}
 	
+	/**
+	 * Sets whether a large message shows the whole text. Large messages are collapsed by default.
+	 * 
+	 * @param pExpanded <code>true</code> to show the whole text, <code>false</code> to show the 
+	 *                  first lines
+	 * @see Chat#setLargeMessageLength(int)
+	 */
+	public void setExpanded(boolean pExpanded)
+	{
+		if (bExpanded != pExpanded)
+		{
+			bExpanded = pExpanded;
+			
+			updateBubble();
+			
+			//the state is kept in the model message, if the view is recycled
+			fireChanged();
+		}
+	}
+	
+	/**
+	 * Gets whether a large message shows the whole text.
+	 * 
+	 * @return <code>true</code> if the whole text is shown
+	 */
+	public boolean isExpanded()
+	{
+		return bExpanded;
+	}
+	
+	/**
+	 * Gets whether the text is longer than the length of large messages.
+	 * 
+	 * @return <code>true</code> if the message is large
+	 * @see Chat#getLargeMessageLength()
+	 */
+	boolean isLarge()
+	{
+		return chat != null 
+			   && chat.getLargeMessageLength() > 0 
+			   && text != null 
+			   && text.length() > chat.getLargeMessageLength();
+	}
+	
+	/**
+	 * Gets the creation time.
+	 * 
+	 * @return the time in milliseconds
+	 */
+	public long getTimestamp()
+	{
+		return lTimestamp;
+	}
+	
+	/**
+	 * Gets the current state as lightweight model message.
+	 * 
+	 * @return the model message
+	 */
+	public ChatMessage getChatMessage()
+	{
+		if (cmsg == null)
+		{
+			cmsg = new ChatMessage(text, type, colBackground, colForeground, isTyping, lTimestamp, bExpanded);
+		}
+		
+		return cmsg;
+	}
+	
+	/**
+	 * Binds this view to another model message. This is used for recycling views.
+	 * 
+	 * @param pMessage the model message with the same type as this message
+	 */
+	void bind(ChatMessage pMessage)
+	{
+		//only pinned views are used outside of the list, and they won't be bound again
+		discardAppendedText();
+		
+		bExpanded = pMessage.isExpanded();
+		
+		text = pMessage.getText();
+		colBackground = pMessage.getBackground();
+		colForeground = pMessage.getForeground();
+		isTyping = pMessage.isTyping();
+		lTimestamp = pMessage.getTimestamp();
+		
+		cmsg = pMessage;
+		
+		updateBubble();
+	}
+	
+	/**
+	 * Shows the appended text.
+	 */
+	private void showAppendedText()
+	{
+		if (sbAppended == null || sbAppended.length() == 0)
+		{
+			return;
+		}
+		
+		String sAppended = sbAppended.toString();
+		
+		sbAppended.setLength(0);
+		
+		text = text != null ? text + sAppended : sAppended;
+		
+		if (bUpdatePending || (chat != null && chat.isUpdating()))
+		{
+			bUpdatePending = true;
+		}
+		else
+		{
+			bubble.append(sAppended);
+		}
+		
+		fireChanged();
+	}
+	
+	/**
+	 * Discards the appended text which is not shown yet.
+	 */
+	private void discardAppendedText()
+	{
+		if (sbAppended != null)
+		{
+			sbAppended.setLength(0);
+		}
+		
+		if (lisAppend != null)
+		{
+			FrameClock.removePulseListener(lisAppend);
+		}
+	}
+	
+	/**
+	 * Updates the bubble, if the chat is not in update mode. Otherwise the update will be deferred
+	 * until the message will be measured.
+	 */
+	private void updateBubble()
+	{
+		if (chat != null && chat.isUpdating())
+		{
+			bUpdatePending = true;
+		}
+		else
+		{
+			bUpdatePending = false;
+			
+			bubble.update();
+		}
+	}
+	
+	/**
+	 * Updates the bubble, if an update was deferred.
+	 */
+	private void validateBubble()
+	{
+		if (bUpdatePending)
+		{
+			bUpdatePending = false;
+			
+			bubble.update();
+		}
+	}
+	
+	/**
+	 * Notifies the chat about a changed message.
+	 */
+	private void fireChanged()
+	{
+		cmsg = null;
+		
+		if (chat != null)
+		{
+			chat.messageChanged(this);
+		}
+	}
+	
 	/**
 	 * Updates the maximum size of the bubble.
 	 * 
-	 * @param pComponent the parent component
+	 * @param pWidth the available width
 	 */
-	private void updateBubbleMaxSize(Component pComponent)
+	private void updateBubbleMaxSize(int pWidth)
 	{
 		//don't grow out of the message area
-		bubble.setMaximumSize(new Dimension(pComponent.getWidth() - (avatar.isVisible() ? avatar.getWidth() + flThis.getHorizontalGap() : 0), 
-				                     		Integer.MAX_VALUE));
+		int iMaxWidth = pWidth - (avatar.isVisible() ? avatar.getWidth() + flThis.getHorizontalGap() : 0);
+		
+		if (!bubble.isMaximumSizeSet() || bubble.getMaximumSize().width != iMaxWidth)
+		{
+			bubble.setMaximumSize(new Dimension(iMaxWidth, Integer.MAX_VALUE));
+		}
+	}
+	
+	/**
+	 * Measures the height of this message for the given width. The message doesn't need to be 
+	 * part of a component hierarchy, because the layout will be done manually.
+	 * 
+	 * @param pWidth the available width
+	 * @return the preferred height
+	 */
+	int measure(int pWidth)
+	{
+		validateBubble();
+		
+		updateBubbleMaxSize(pWidth);
+		
+		Font font = bubble.label.getFont();
+		int iMaxWidth = bubble.getMaximumSize().width;
+		
+		if (iMeasuredRevision == iRevision 
+			&& iMeasuredWidth == pWidth 
+			&& iMeasuredMaxWidth == iMaxWidth
+			&& font.equals(fntMeasured))
+		{
+			lSizeCacheHits++;
+			
+			return iMeasuredHeight;
+		}
+		
+		lSizeCacheMisses++;
+		
+		//first pass sets the text width, second pass calculates the wrapped height
+		for (int i = 0; i < 2; i++)
+		{
+			invalidateTree(this);
+			
+			setSize(pWidth, getPreferredSize().height);
+			
+			layoutTree(this);
+		}
+		
+		iMeasuredHeight = getPreferredSize().height;
+		iMeasuredRevision = iRevision;
+		iMeasuredWidth = pWidth;
+		iMeasuredMaxWidth = iMaxWidth;
+		fntMeasured = font;
+		
+		return iMeasuredHeight;
+	}
+	
+	/**
+	 * Renders the bubble in the background, if not already done. The image will be used for 
+	 * painting as long as the bubble doesn't change.
+	 */
+	void prerender()
+	{
+		int iScale = 4;
+		
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		
+		if (gc != null)
+		{
+			iScale = Math.max(4, (int)Math.ceil(gc.getDefaultTransform().getScaleX() * 4));
+		}
+		
+		bubble.prerender(iScale);
+	}
+	
+	/**
+	 * Gets the number of size requests which were answered from the cache of a message, since the
+	 * last {@link #resetSizeCacheStatistics()}. Only the measuring for the message list is counted,
+	 * not the preferred size of the bubble.
+	 * 
+	 * @return the number of cache hits
+	 */
+	public static long getSizeCacheHitCount()
+	{
+		return lSizeCacheHits;
+	}
+	
+	/**
+	 * Gets the number of size requests which needed a layout of the text, since the last 
+	 * {@link #resetSizeCacheStatistics()}.
+	 * 
+	 * @return the number of cache misses
+	 */
+	public static long getSizeCacheMissCount()
+	{
+		return lSizeCacheMisses;
+	}
+	
+	/**
+	 * Gets the ratio of size requests which were answered from the cache.
+	 * 
+	 * @return the ratio between <code>0</code> and <code>1</code>
+	 */
+	public static double getSizeCacheHitRatio()
+	{
+		long lTotal = lSizeCacheHits + lSizeCacheMisses;
+		
+		if (lTotal == 0)
+		{
+			return 0;
+		}
+		
+		return (double)lSizeCacheHits / lTotal;
+	}
+	
+	/**
+	 * Resets the size cache statistics.
+	 */
+	public static void resetSizeCacheStatistics()
+	{
+		lSizeCacheHits = 0;
+		lSizeCacheMisses = 0;
+	}
+	
+	/**
+	 * Invalidates the given component and all its children.
+	 * 
+	 * @param pComponent the component
+	 */
+	private static void invalidateTree(Component pComponent)
+	{
+		pComponent.invalidate();
+		
+		if (pComponent instanceof Container)
+		{
+			for (Component comp : ((Container)pComponent).getComponents())
+			{
+				invalidateTree(comp);
+			}
+		}
+	}
+	
+	/**
+	 * Lays out the given component and all its children. This works without peers, in contrast 
+	 * to {@link Container#validate()}.
+	 * 
+	 * @param pComponent the component
+	 */
+	private static void layoutTree(Component pComponent)
+	{
+		if (pComponent instanceof Container)
+		{
+			Container con = (Container)pComponent;
+			
+			con.doLayout();
+			
+			for (Component comp : con.getComponents())
+			{
+				layoutTree(comp);
+			}
+		}
 	}
 	
     //****************************************************************
@@ -354,11 +805,105 @@ public class Message extends BasePanel
 	    // Class members
 	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~    
 
+		/** the rendering hints for the bubble. */
+		private static final RenderingHints QUALITY_HINTS = new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		
+		/** the maximum number of shared shapes. */
+		private static final int MAX_CACHED_SHAPES = 64;
+		
+		/** the maximum number of shared bubble images. */
+		private static final int MAX_CACHED_IMAGES = 16;
+		
+		/** the size of a bubble image. */
+		private static final int SLICE_IMAGE_SIZE = 40;
+		
+		/** the width of the fixed slice on the tail side. */
+		private static final int SLICE_TAIL = 20;
+		
+		/** the width of the fixed slice on the other side. */
+		private static final int SLICE_SIDE = 10;
+		
+		/** the height of the fixed top slice. */
+		private static final int SLICE_TOP = 15;
+		
+		/** the height of the fixed bottom slice. */
+		private static final int SLICE_BOTTOM = 10;
+		
+		/** the shared shapes, by size and type. */
+		private static LinkedHashMap<Long, Shape> hmpShapes = new LinkedHashMap<Long, Shape>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Shape> pEldest)
+			{
+				return size() > MAX_CACHED_SHAPES;
+			}
+		};
+		
+		/** the shared bubble images, by color, type and scale. */
+		private static LinkedHashMap<Long, BufferedImage> hmpImages = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> pEldest)
+			{
+				return size() > MAX_CACHED_IMAGES;
+			}
+		};
+		
+		static
+		{
+			QUALITY_HINTS.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		}
+		
 		/** the message. */
 		private Message message;
 		
-		/** the text pane. */
-		private TextPane textPane;
+		/** the text label. */
+		private TextLabel label;
+		
+		/** the label for expanding and collapsing large messages. */
+		private JLabel lblExpand;
+		
+		/** the shape of the last paint. */
+		private Shape shpLast;
+		
+		/** the image of the last paint. */
+		private BufferedImage imgLast;
+		
+		/** the key of the image of the last paint. */
+		private long lImageKeyLast;
+		
+		/** the width of the last shape. */
+		private int iShapeWidth;
+		
+		/** the height of the last shape. */
+		private int iShapeHeight;
+		
+		/** the cached preferred size. */
+		private Dimension dimPreferred;
+		
+		/** the font of the cached preferred size. */
+		private Font fntPreferred;
+		
+		/** the content revision of the cached preferred size. */
+		private int iPreferredRevision = -1;
+		
+		/** the text width of the cached preferred size. */
+		private int iPreferredWidth;
+		
+		/** the maximum width of the cached preferred size. */
+		private int iPreferredMaxWidth;
+		
+		/** the image which was rendered in the background. */
+		private BufferedImage imgPrerendered;
+		
+		/** the request of the rendered image. */
+		private Request reqPrerendered;
+		
+		/** the request which is currently rendered. */
+		private Request reqPending;
+		
+		/** the last request which couldn't be rendered. */
+		private Request reqRejected;
 		
 	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 	    // Initialization
@@ -373,21 +918,30 @@ public class Message extends BasePanel
 		{
 			message = pMessage;
 
-			Object oMin = UIManager.get("Component.minimumWidth");
-			
-			//important for some LaFs (like Flat)
-			UIManager.put("Component.minimumWidth", Integer.valueOf(20));
-			
-			try
+			label = new TextLabel();
+			label.setMinimumSize(new Dimension(20, 20));
+			label.addPropertyChangeListener("lineCount", new PropertyChangeListener()
 			{
-				textPane = new TextPane(true);
-				textPane.setHighlighter(null);
-				textPane.setMinimumSize(new Dimension(20, 20));
-			}
-			finally
+				@Override
+				public void propertyChange(PropertyChangeEvent pEvent)
+				{
+					//large text grows while wrapping
+					contentChanged();
+				}
+			});
+			
+			lblExpand = new JLabel();
+			lblExpand.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+			lblExpand.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+			lblExpand.setVisible(false);
+			lblExpand.addMouseListener(new MouseAdapter()
 			{
-				UIManager.put("Component.minimumWidth", oMin);
-			}
+				@Override
+				public void mouseClicked(MouseEvent pEvent)
+				{
+					message.setExpanded(!message.isExpanded());
+				}
+			});
 			
 //			JScrollPane scpText = new JScrollPane();
 //			scpText.setOpaque(false);
@@ -414,74 +968,477 @@ public class Message extends BasePanel
 			
 			setLayout(blThis);
 			
-			add(textPane, JVxBorderLayout.CENTER);
+			add(label, JVxBorderLayout.CENTER);
+			add(lblExpand, JVxBorderLayout.SOUTH);
 		}
 		
 	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 	    // Overwritten methods
 	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~    
 
+		@Override
+		public void paint(Graphics g)
+		{
+			if (!paintPrerendered(g))
+			{
+				super.paint(g);
+			}
+		}
+		
 		@Override
 		protected void paintComponent(Graphics g) 
 		{
 		    final Graphics2D graphics2D = (Graphics2D)g;
 		    
-		    RenderingHints qualityHints = new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		    qualityHints.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-		    
-		    graphics2D.setRenderingHints(qualityHints);
+		    RenderQuality.applyHints(graphics2D, this);
 		    
 		    int width = getWidth();
 		    int height = getHeight();
 		    
+		    Color colBackground = getBubbleBackground();
+		    
+		    if (message.chat != null 
+		    	&& message.chat.isBubbleImagesEnabled()
+		    	&& width >= SLICE_IMAGE_SIZE
+		    	&& height >= SLICE_IMAGE_SIZE)
+		    {
+		    	paintSlices(graphics2D, colBackground, width, height);
+		    }
+		    else
+		    {
+			    graphics2D.setPaint(colBackground);
+				graphics2D.fill(getShape(width, height));
+		    }
+		    
+		    super.paintComponent(g);
+		}		
+		
+		@Override
+		public Dimension getPreferredSize()
+		{
+			if (isPreferredSizeSet())
+			{
+				return super.getPreferredSize();
+			}
+			
+			//the wrapped text height depends on the current width of the text
+			Font font = label.getFont();
+			int iWidth = label.getWidth();
+			int iMaxWidth = isMaximumSizeSet() ? getMaximumSize().width : -1;
+			
+			//not counted in the statistics, the message measuring is asked first
+			if (dimPreferred == null
+				|| iPreferredRevision != message.iRevision
+				|| iPreferredWidth != iWidth
+				|| iPreferredMaxWidth != iMaxWidth
+				|| !font.equals(fntPreferred))
+			{
+				dimPreferred = super.getPreferredSize();
+				fntPreferred = font;
+				iPreferredRevision = message.iRevision;
+				iPreferredWidth = iWidth;
+				iPreferredMaxWidth = iMaxWidth;
+			}
+			
+			return new Dimension(dimPreferred);
+		}
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // User-defined methods
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~    
+		
+		/**
+		 * Gets the background color of the bubble.
+		 * 
+		 * @return the message color or the default color of the chat
+		 */
+		private Color getBubbleBackground()
+		{
+		    Color colBackground = message.getBackground();
+
+		    if (colBackground == null)
+		    {
+		    	if (message.type == Type.Left)
+		    	{
+		    		colBackground = message.chat.getDefaultMessageBackgroundLeft();
+		    	}
+		    	else
+		    	{
+		    		colBackground = message.chat.getDefaultMessageBackgroundRight();
+		    	}
+		    }
+		    
+		    return colBackground;
+		}
+		
+		/**
+		 * Gets whether the bubble can be rendered in the background. Typing messages contain an
+		 * animated icon, selected text is shown in an editor and large messages would need huge 
+		 * images, so they will always be painted.
+		 * 
+		 * @return <code>true</code> if rendering is possible
+		 */
+		private boolean isPrerenderable()
+		{
+			return message.chat != null 
+				   && message.chat.isBubblePrerenderingEnabled()
+				   && !message.isTyping
+				   && getWidth() > 0
+				   && getHeight() > 0
+				   && !label.isSelecting()
+				   && !lblExpand.isVisible();
+		}
+		
+		/**
+		 * Paints the image which was rendered in the background, if it's still valid. Otherwise
+		 * a new image will be rendered for the next paint.
+		 * 
+		 * @param pGraphics the graphics
+		 * @return <code>true</code> if the image was painted, <code>false</code> if the bubble
+		 *         has to be painted
+		 */
+		private boolean paintPrerendered(Graphics pGraphics)
+		{
+			if (!isPrerenderable())
+			{
+				return false;
+			}
+			
+			int iScale = Math.max(4, (int)Math.ceil(((Graphics2D)pGraphics).getTransform().getScaleX() * 4));
+			
+			if (imgPrerendered != null 
+				&& reqPrerendered.matches(message.iRevision, getWidth(), getHeight(), iScale, label.getFont(), getBubbleBackground()))
+			{
+				pGraphics.drawImage(imgPrerendered, 0, 0, getWidth(), getHeight(), null);
+				
+				return true;
+			}
+			
+			prerender(iScale);
+			
+			return false;
+		}
+		
+		/**
+		 * Renders the bubble in the background, if not already done or in progress.
+		 * 
+		 * @param pScale the device scale, multiplied by 4
+		 */
+		void prerender(int pScale)
+		{
+			if (!isPrerenderable())
+			{
+				return;
+			}
+			
+			int iWidth = getWidth();
+			int iHeight = getHeight();
+			
+			Font font = label.getFont();
+			Color colBackground = getBubbleBackground();
+			
+			if ((imgPrerendered != null && reqPrerendered.matches(message.iRevision, iWidth, iHeight, pScale, font, colBackground))
+				|| (reqPending != null && reqPending.matches(message.iRevision, iWidth, iHeight, pScale, font, colBackground))
+				|| (reqRejected != null && reqRejected.matches(message.iRevision, iWidth, iHeight, pScale, font, colBackground)))
+			{
+				return;
+			}
+			
+			if (reqPending != null)
+			{
+				reqPending.cancel();
+			}
+			
+			Insets ins = label.getInsets();
+			
+			FontMetrics fm = label.getFontMetrics(font);
+			
+			reqPending = new Request(this, 
+					                 getShape(iWidth, iHeight), 
+					                 label.getLines(), 
+					                 font, 
+					                 colBackground, 
+					                 label.getForeground(), 
+					                 (Map<?, ?>)Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints"), 
+					                 message.iRevision, 
+					                 iWidth, 
+					                 iHeight, 
+					                 pScale, 
+					                 label.getX() + ins.left, 
+					                 label.getY() + ins.top, 
+					                 label.getHeight() - ins.top - ins.bottom,
+					                 fm.getAscent(),
+					                 fm.getHeight());
+			
+			BubbleRenderer.render(reqPending);
+		}
+		
+		/**
+		 * Sets the image which was rendered in the background.
+		 * 
+		 * @param pRequest the request
+		 * @param pImage the image or <code>null</code> if the bubble couldn't be rendered
+		 */
+		void prerendered(Request pRequest, BufferedImage pImage)
+		{
+			if (pRequest != reqPending)
+			{
+				//outdated
+				return;
+			}
+			
+			reqPending = null;
+			
+			if (pImage != null)
+			{
+				imgPrerendered = pImage;
+				reqPrerendered = pRequest;
+			}
+			else
+			{
+				reqRejected = pRequest;
+			}
+		}
+		
+		/**
+		 * Creates the bubble shape.
+		 * 
+		 * @param pWidth the width
+		 * @param pHeight the height
+		 * @param pType the message type
+		 * @return the shape
+		 */
+		private static Shape createShape(int pWidth, int pHeight, Type pType)
+		{
 		    GeneralPath path = new GeneralPath();
 		    path.moveTo(5, 10);
 		    path.curveTo(5, 10, 7, 5, 0, 0);
 		    path.curveTo(0, 0, 12, 0, 12, 5);
 		    path.curveTo(12, 5, 12, 0, 20, 0);
-		    path.lineTo(width - 10, 0);
-		    path.curveTo(width - 10, 0, width, 0, width, 10);
-		    path.lineTo(width, height - 10);
-		    path.curveTo(width, height - 10, width, height, width - 10, height);
-		    path.lineTo(15, height);
-		    path.curveTo(15, height, 5, height, 5, height - 10);
+		    path.lineTo(pWidth - 10, 0);
+		    path.curveTo(pWidth - 10, 0, pWidth, 0, pWidth, 10);
+		    path.lineTo(pWidth, pHeight - 10);
+		    path.curveTo(pWidth, pHeight - 10, pWidth, pHeight, pWidth - 10, pHeight);
+		    path.lineTo(15, pHeight);
+		    path.curveTo(15, pHeight, 5, pHeight, 5, pHeight - 10);
 		    path.lineTo(5, 15);
-
-		    Color colBackground = message.getBackground();
-
-		    if (message.type == Type.Left)
-		    {
-		    	graphics2D.setPaint(colBackground != null ? colBackground : message.chat.getDefaultMessageBackgroundLeft());
-		    }
-		    else
+		    
+		    if (pType == Type.Right)
 		    {
 				AffineTransform tx = AffineTransform.getScaleInstance(-1, 1);
-				tx.translate(-width, 0);
+				tx.translate(-pWidth, 0);
 
 			    path.transform(tx);
-			    
-			    graphics2D.setPaint(colBackground != null ? colBackground : message.chat.getDefaultMessageBackgroundRight());
 		    }
 		    
 		    path.closePath();
-
-			graphics2D.fill(path);
 		    
-		    super.paintComponent(g);
-		}		
+		    return path;
+		}
 		
-	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-	    // User-defined methods
-	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~    
+		/**
+		 * Gets the bubble shape for the given size. The last shape is kept per bubble and shapes 
+		 * are shared between all bubbles.
+		 * 
+		 * @param pWidth the width
+		 * @param pHeight the height
+		 * @return the shape
+		 */
+		private Shape getShape(int pWidth, int pHeight)
+		{
+			if (shpLast == null || iShapeWidth != pWidth || iShapeHeight != pHeight)
+			{
+				Long lKey = Long.valueOf(((long)pWidth << 32) | ((long)pHeight << 1) | message.type.ordinal());
+				
+				Shape shape = hmpShapes.get(lKey);
+				
+				if (shape == null)
+				{
+					shape = createShape(pWidth, pHeight, message.type);
+					
+					hmpShapes.put(lKey, shape);
+				}
+				
+				shpLast = shape;
+				iShapeWidth = pWidth;
+				iShapeHeight = pHeight;
+			}
+			
+			return shpLast;
+		}
+		
+		/**
+		 * Paints the bubble with a pre-rendered image. The corners and the tail will be painted 
+		 * unscaled, the edges and the center will be stretched.
+		 * 
+		 * @param pGraphics the graphics
+		 * @param pColor the background color
+		 * @param pWidth the width
+		 * @param pHeight the height
+		 */
+		private void paintSlices(Graphics2D pGraphics, Color pColor, int pWidth, int pHeight)
+		{
+			//render with the device scale, in quarter steps
+			int iScale = Math.max(4, (int)Math.ceil(pGraphics.getTransform().getScaleX() * 4));
+			
+			long lKey = ((long)pColor.getRGB() << 32) | ((long)iScale << 1) | message.type.ordinal();
+			
+			if (imgLast == null || lImageKeyLast != lKey)
+			{
+				Long lMapKey = Long.valueOf(lKey);
+				
+				BufferedImage img = hmpImages.get(lMapKey);
+				
+				if (img == null)
+				{
+					int iSize = SLICE_IMAGE_SIZE * iScale / 4;
+					
+					img = new BufferedImage(iSize, iSize, BufferedImage.TYPE_INT_ARGB);
+					
+					Graphics2D g = img.createGraphics();
+					
+					try
+					{
+						g.setRenderingHints(QUALITY_HINTS);
+						g.scale(iScale / 4d, iScale / 4d);
+						g.setPaint(pColor);
+						g.fill(createShape(SLICE_IMAGE_SIZE, SLICE_IMAGE_SIZE, message.type));
+					}
+					finally
+					{
+						g.dispose();
+					}
+					
+					hmpImages.put(lMapKey, img);
+				}
+				
+				imgLast = img;
+				lImageKeyLast = lKey;
+			}
+			
+			int iLeft = message.type == Type.Left ? SLICE_TAIL : SLICE_SIDE;
+			int iRight = message.type == Type.Left ? SLICE_SIDE : SLICE_TAIL;
+			
+			int iImageSize = imgLast.getWidth();
+			
+			int iSrcLeft = iLeft * iScale / 4;
+			int iSrcRight = iImageSize - iRight * iScale / 4;
+			int iSrcTop = SLICE_TOP * iScale / 4;
+			int iSrcBottom = iImageSize - SLICE_BOTTOM * iScale / 4;
+			
+			int iDstRight = pWidth - iRight;
+			int iDstBottom = pHeight - SLICE_BOTTOM;
+			
+			//top row
+			pGraphics.drawImage(imgLast, 0, 0, iLeft, SLICE_TOP, 0, 0, iSrcLeft, iSrcTop, null);
+			pGraphics.drawImage(imgLast, iLeft, 0, iDstRight, SLICE_TOP, iSrcLeft, 0, iSrcRight, iSrcTop, null);
+			pGraphics.drawImage(imgLast, iDstRight, 0, pWidth, SLICE_TOP, iSrcRight, 0, iImageSize, iSrcTop, null);
+			
+			//center row
+			pGraphics.drawImage(imgLast, 0, SLICE_TOP, iLeft, iDstBottom, 0, iSrcTop, iSrcLeft, iSrcBottom, null);
+			pGraphics.drawImage(imgLast, iLeft, SLICE_TOP, iDstRight, iDstBottom, iSrcLeft, iSrcTop, iSrcRight, iSrcBottom, null);
+			pGraphics.drawImage(imgLast, iDstRight, SLICE_TOP, pWidth, iDstBottom, iSrcRight, iSrcTop, iImageSize, iSrcBottom, null);
+			
+			//bottom row
+			pGraphics.drawImage(imgLast, 0, iDstBottom, iLeft, pHeight, 0, iSrcBottom, iSrcLeft, iImageSize, null);
+			pGraphics.drawImage(imgLast, iLeft, iDstBottom, iDstRight, pHeight, iSrcLeft, iSrcBottom, iSrcRight, iImageSize, null);
+			pGraphics.drawImage(imgLast, iDstRight, iDstBottom, pWidth, pHeight, iSrcRight, iSrcBottom, iImageSize, iImageSize, null);
+		}
+		
+		/**
+		 * Invalidates the cached size and the rendered image after a content change.
+		 */
+		private void contentChanged()
+		{
+			message.iRevision++;
+			
+			imgPrerendered = null;
+			reqPrerendered = null;
+			reqRejected = null;
+			
+			if (reqPending != null)
+			{
+				reqPending.cancel();
+				reqPending = null;
+			}
+		}
+		
+		/**
+		 * Appends text. The whole text will be updated instead, if it's translated or large.
+		 * 
+		 * @param pText the appended text
+		 */
+		void append(String pText)
+		{
+			if (message.chat == null)
+			{
+				return;
+			}
+			
+			//without translation, the label shows the text as is and only the appended part is new
+			if (!message.isLarge()
+				&& message.chat.getTranslation() == null
+				&& message.text.length() == label.getText().length() + pText.length())
+			{
+				contentChanged();
+				
+				label.appendText(pText);
+				
+				if (message.isShowing())
+				{
+					repaint();
+				}
+			}
+			else
+			{
+				update();
+			}
+		}
 		
 		/**
 		 * Updates text and colors.
 		 */
 		protected void update()
 		{
+			contentChanged();
+			
 			if (message.chat != null)
 			{
-				textPane.setText(message.chat.translate(message.text));
+				String sText = message.chat.translate(message.text);
+				
+				if (message.isLarge())
+				{
+					int iLength = message.chat.getLargeMessageLength();
+					
+					if (message.bExpanded)
+					{
+						label.setText(sText);
+						label.setMaximumLines(0);
+						label.setLayoutChunkSize(iLength);
+					}
+					else
+					{
+						//the first lines will be wrapped from the beginning of the text only
+						label.setText(sText != null && sText.length() > iLength ? sText.substring(0, iLength) : sText);
+						label.setMaximumLines(message.chat.getCollapsedLineCount());
+						label.setLayoutChunkSize(0);
+					}
+					
+					lblExpand.setText(message.chat.translate(message.bExpanded ? "Show less" : "Show more"));
+					lblExpand.setVisible(true);
+				}
+				else
+				{
+					label.setText(sText);
+					label.setMaximumLines(0);
+					label.setLayoutChunkSize(0);
+					
+					lblExpand.setVisible(false);
+				}
+				
+				label.setSelectionEnabled(!message.isTyping);
+				
+				Icon ico = null;
 				
 				Color colForeground = message.getForeground();
 				
@@ -490,31 +1447,24 @@ public class Message extends BasePanel
 					//left: icon after text
 					if (message.isTyping)
 					{
-						Icon ico = message.chat.getTypingIconLeft();
-						
-						if (ico != null)
-						{
-							textPane.insertIcon(ico);
-						}
+						ico = message.chat.getTypingIconLeft();
 					}
 					
-					textPane.setForeground(colForeground != null ? colForeground : message.chat.getDefaultMessageForegroundLeft());
+					label.setIcon(ico, false);
+					label.setForeground(colForeground != null ? colForeground : message.chat.getDefaultMessageForegroundLeft());
+					lblExpand.setForeground(label.getForeground());
 				}
 				else
 				{
 					//right: icon before text
 					if (message.isTyping)
 					{
-						Icon ico = message.chat.getTypingIconRight();
-						
-						if (ico != null)
-						{
-							textPane.setCaretPosition(0);
-							textPane.insertIcon(ico);
-						}
+						ico = message.chat.getTypingIconRight();
 					}
-	
-					textPane.setForeground(colForeground != null ? colForeground : message.chat.getDefaultMessageForegroundRight());
+					
+					label.setIcon(ico, true);
+					label.setForeground(colForeground != null ? colForeground : message.chat.getDefaultMessageForegroundRight());
+					lblExpand.setForeground(label.getForeground());
 				}
 	
 				if (message.isShowing())
@@ -0,0 +1,1232 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat;
+
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import com.sibvisions.components.chat.Message.Type;
+import com.sibvisions.components.chat.component.ArcPanel;
+import com.sibvisions.components.chat.event.ChatModelEvent;
+import com.sibvisions.components.chat.event.ChatModelListener;
+import com.sibvisions.components.chat.model.ChatMessage;
+import com.sibvisions.components.chat.model.ChatModel;
+import com.sibvisions.components.chat.util.PrefixSumTree;
+import com.sibvisions.util.ArrayUtil;
+
+/**
+ * The <code>MessageList</code> is a virtualized message column which renders the messages of a 
+ * {@link ChatModel}. Only the messages which intersect the visible area of the surrounding 
+ * {@link JViewport} will be realized as {@link Message} components. All other messages are 
+ * represented by their cached height. Views which are not visible anymore will be recycled.
+ * Tail messages, like typing messages, are not part of the model and always shown after the
+ * model messages. Views which are used outside of the list are only weakly referenced, while 
+ * they're not visible.
+ * 
+ * @author René Jahn
+ */
+public class MessageList extends ArcPanel
+                         implements Scrollable,
+                                    ChatModelListener
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the estimated height of a message which wasn't measured. */
+	private static final int ESTIMATED_HEIGHT = 45;
+	
+	/** the additional area above and below the visible area, which will be realized. */
+	private static final int OVERSCAN = 100;
+	
+	/** the maximum number of recycled views per message type. */
+	private static final int MAX_POOL_SIZE = 20;
+	
+	/** the chat. */
+	private Chat chat;
+	
+	/** the model. */
+	private ChatModel model;
+	
+	/** the realized views. */
+	private Message[] views = new Message[16];
+	
+	/** the views which are used outside of the list, they won't be recycled. */
+	private WeakReference<Message>[] waShared = createReferences(16);
+	
+	/** the positions of all views which are bound to a row. */
+	private WeakHashMap<Message, Integer> whmpIndex = new WeakHashMap<Message, Integer>();
+	
+	/** the cached message heights with prefix sums for the vertical offsets. */
+	private PrefixSumTree heights = new PrefixSumTree(16);
+	
+	/** the width which was used for measuring the message heights. */
+	private int[] iaMeasuredWidth = new int[16];
+	
+	/** the recycled left views. */
+	private ArrayUtil<Message> liPoolLeft = new ArrayUtil<Message>();
+	
+	/** the recycled right views. */
+	private ArrayUtil<Message> liPoolRight = new ArrayUtil<Message>();
+	
+	/** the tail messages, e.g. typing messages, which are always shown after the model messages. */
+	private ArrayUtil<Message> liTail = new ArrayUtil<Message>();
+	
+	/** the views for the messages which will be inserted. */
+	private IdentityHashMap<ChatMessage, Message> hmpPending = new IdentityHashMap<ChatMessage, Message>();
+	
+	/** the viewport listener. */
+	private ChangeListener listener;
+	
+	/** the viewport. */
+	private JViewport viewport;
+	
+	/** the number of model messages. */
+	private int iCount;
+	
+	/** the number of all rows, including the tail messages. */
+	private int iRowCount;
+	
+	/** the first realized message. */
+	private int iRealizedFirst;
+	
+	/** the last realized message (exclusive). */
+	private int iRealizedLast;
+	
+	/** the top of the realized area. */
+	private int iRealizedTop;
+	
+	/** the bottom of the realized area. */
+	private int iRealizedBottom;
+	
+	/** the first visible message before changes above the visible area, or <code>-1</code>. */
+	private int iAnchorIndex = -1;
+	
+	/** the distance between the view position and the top of the anchor message. */
+	private int iAnchorDelta;
+	
+	/** whether measuring with a new width is deferred, e.g. while the window is resized. */
+	private boolean bReflowDeferred;
+	
+	/** whether the list paints the chat background and is opaque. */
+	private boolean bBackgroundPainted;
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Creates a new instance of <code>MessageList</code>.
+	 * 
+	 * @param pChat the chat
+	 * @param pModel the model
+	 */
+	public MessageList(Chat pChat, ChatModel pModel)
+	{
+		super(null);
+		
+		chat = pChat;
+		
+		listener = new ChangeListener()
+		{
+			public void stateChanged(ChangeEvent pEvent)
+			{
+				Rectangle rect = viewport.getViewRect();
+				
+				//realize newly visible messages
+				if ((rect.y < iRealizedTop && iRealizedTop > 0)
+					|| (rect.y + rect.height > iRealizedBottom && iRealizedBottom < getTotalHeight()))
+				{
+					revalidate();
+				}
+			}
+		};
+		
+		setModel(pModel);
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Interface implementation
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Dimension getPreferredScrollableViewportSize()
+	{
+		return getPreferredSize();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getScrollableUnitIncrement(Rectangle pVisibleRect, int pOrientation, int pDirection)
+	{
+		return 20;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getScrollableBlockIncrement(Rectangle pVisibleRect, int pOrientation, int pDirection)
+	{
+		if (pOrientation == SwingConstants.VERTICAL)
+		{
+			return pVisibleRect.height;
+		}
+		
+		return pVisibleRect.width;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean getScrollableTracksViewportWidth()
+	{
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean getScrollableTracksViewportHeight()
+	{
+		return false;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void chatModelChanged(ChatModelEvent pEvent)
+	{
+		int iFirst = pEvent.getFirstIndex();
+		int iLast = pEvent.getLastIndex();
+		
+		switch (pEvent.getType())
+		{
+			case ChatModelEvent.EVENT_INSERTED:
+				if (iRowCount > 0 && iFirst <= getFirstVisibleIndex())
+				{
+					//keep the visible messages in place
+					captureAnchor();
+				}
+				
+				if (iAnchorIndex >= iFirst)
+				{
+					iAnchorIndex += iLast - iFirst + 1;
+				}
+				
+				insertRows(iFirst, iLast - iFirst + 1);
+				
+				iCount += iLast - iFirst + 1;
+				
+				if (!hmpPending.isEmpty())
+				{
+					int iWidth = chat.isUpdating() ? 0 : getWidth();
+					
+					for (int i = iFirst; i <= iLast; i++)
+					{
+						Message msg = hmpPending.remove(model.getMessage(i));
+						
+						if (msg != null)
+						{
+							views[i] = msg;
+							waShared[i] = new WeakReference<Message>(msg);
+							
+							whmpIndex.put(msg, Integer.valueOf(i));
+							
+							if (iWidth > 0)
+							{
+								//new messages are mostly visible
+								getMessageHeight(i, iWidth);
+							}
+							
+							if (i < iRealizedFirst || i >= iRealizedLast)
+							{
+								//the view will be realized with the next layout, if visible
+								views[i] = null;
+							}
+						}
+					}
+				}
+				break;
+				
+			case ChatModelEvent.EVENT_REMOVED:
+				if (iLast < getFirstVisibleIndex())
+				{
+					//keep the visible messages in place
+					captureAnchor();
+				}
+				
+				if (iAnchorIndex >= iFirst)
+				{
+					if (iAnchorIndex <= iLast)
+					{
+						iAnchorIndex = -1;
+					}
+					else
+					{
+						iAnchorIndex -= iLast - iFirst + 1;
+					}
+				}
+				
+				removeRows(iFirst, iLast - iFirst + 1);
+				
+				iCount -= iLast - iFirst + 1;
+				break;
+				
+			case ChatModelEvent.EVENT_CHANGED:
+				for (int i = iFirst; i <= iLast; i++)
+				{
+					Message msg = getBoundView(i);
+					
+					if (msg != null)
+					{
+						ChatMessage cmsg = model.getMessage(i);
+						
+						if (msg.getChatMessage() != cmsg)
+						{
+							msg.bind(cmsg);
+						}
+					}
+					
+					iaMeasuredWidth[i] = -1;
+				}
+				break;
+				
+			default:
+				//ignore
+		}
+		
+		if (!chat.isUpdating())
+		{
+			revalidate();
+			repaint();
+		}
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Overwritten methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	@Override
+	public void addNotify()
+	{
+		super.addNotify();
+		
+		Container conParent = getParent();
+		
+		if (conParent instanceof JViewport)
+		{
+			viewport = (JViewport)conParent;
+			viewport.addChangeListener(listener);
+		}
+	}
+	
+	@Override
+	public void removeNotify()
+	{
+		if (viewport != null)
+		{
+			viewport.removeChangeListener(listener);
+			viewport = null;
+		}
+		
+		super.removeNotify();
+	}
+	
+	@Override
+	public boolean isOpaque()
+	{
+		return bBackgroundPainted;
+	}
+	
+	@Override
+	protected void paintComponent(Graphics pGraphics)
+	{
+		if (bBackgroundPainted && chat != null)
+		{
+			chat.paintBackground(this, pGraphics);
+		}
+		else
+		{
+			super.paintComponent(pGraphics);
+		}
+	}
+	
+	@Override
+	public Dimension getPreferredSize()
+	{
+		if (isPreferredSizeSet())
+		{
+			return super.getPreferredSize();
+		}
+		
+		return new Dimension(0, getTotalHeight());
+	}
+	
+	@Override
+	public Dimension getMinimumSize()
+	{
+		if (isMinimumSizeSet())
+		{
+			return super.getMinimumSize();
+		}
+		
+		return new Dimension(0, 0);
+	}
+	
+	@Override
+	public void doLayout()
+	{
+		int iWidth = getWidth();
+		
+		if (iWidth <= 0 || iRowCount == 0)
+		{
+			releaseViews(iRealizedFirst, iRealizedLast, 0, 0);
+			
+			iRealizedFirst = 0;
+			iRealizedLast = 0;
+			iRealizedTop = 0;
+			iRealizedBottom = 0;
+			
+			return;
+		}
+		
+		if (iAnchorIndex >= 0)
+		{
+			if (viewport != null)
+			{
+				Point pt = viewport.getViewPosition();
+				
+				pt.y = Math.max(0, Math.min((int)heights.getSum(iAnchorIndex) + iAnchorDelta, 
+						                    (int)heights.getTotal() - viewport.getExtentSize().height));
+				
+				viewport.setViewPosition(pt);
+			}
+			
+			iAnchorIndex = -1;
+		}
+		
+		Rectangle rect = getVisibleRect();
+		
+		int iTop = Math.max(0, rect.y - OVERSCAN);
+		int iBottom = rect.y + rect.height + OVERSCAN;
+		
+		int iTotal = getTotalHeight();
+		
+		int iFirst = getIndexAt(iTop);
+		int y = (int)heights.getSum(iFirst);
+		
+		int iTopFirst = y;
+		
+		int i = iFirst;
+		
+		boolean bPrerender = chat != null && chat.isBubblePrerenderingEnabled();
+		
+		for (; i < iRowCount && y < iBottom; i++)
+		{
+			Message msg = getView(i);
+			
+			if (msg.getParent() != this)
+			{
+				add(msg);
+			}
+			
+			int iHeight = getMessageHeight(i, iWidth);
+			
+			msg.setBounds(0, y, iWidth, iHeight);
+			
+			//the overscan area will be rendered in the background, before it becomes visible
+			if (bPrerender && (y + iHeight <= rect.y || y >= rect.y + rect.height))
+			{
+				msg.prerender();
+			}
+			
+			y += iHeight;
+		}
+		
+		releaseViews(iRealizedFirst, iRealizedLast, iFirst, i);
+		
+		iRealizedFirst = iFirst;
+		iRealizedLast = i;
+		iRealizedTop = iTopFirst;
+		iRealizedBottom = y;
+		
+		if (iTotal != getTotalHeight())
+		{
+			//measured heights differ from estimated heights
+			revalidate();
+		}
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Sets the model.
+	 * 
+	 * @param pModel the model
+	 */
+	public void setModel(ChatModel pModel)
+	{
+		if (pModel == null)
+		{
+			throw new IllegalArgumentException("Model is null!");
+		}
+		
+		if (model != null)
+		{
+			model.removeChatModelListener(this);
+			
+			removeRows(0, iCount);
+			
+			iCount = 0;
+		}
+		
+		model = pModel;
+		model.addChatModelListener(this);
+		
+		insertRows(0, model.getMessageCount());
+		
+		iCount = model.getMessageCount();
+		
+		revalidate();
+		repaint();
+	}
+	
+	/**
+	 * Gets the model.
+	 * 
+	 * @return the model
+	 */
+	public ChatModel getModel()
+	{
+		return model;
+	}
+	
+	/**
+	 * Inserts a message at the given position. The message will be used as view for its 
+	 * {@link ChatMessage} as long as it's part of the model.
+	 * 
+	 * @param pIndex the position
+	 * @param pMessage the message
+	 */
+	public void addMessage(int pIndex, Message pMessage)
+	{
+		ChatMessage cmsg = pMessage.getChatMessage();
+		
+		hmpPending.put(cmsg, pMessage);
+		
+		try
+		{
+			model.addMessage(pIndex, cmsg);
+		}
+		finally
+		{
+			hmpPending.clear();
+		}
+	}
+	
+	/**
+	 * Inserts messages at the given position. The model will be notified once.
+	 * 
+	 * @param pIndex the position
+	 * @param pMessages the messages
+	 * @see #addMessage(int, Message)
+	 */
+	public void addMessages(int pIndex, Collection<Message> pMessages)
+	{
+		ArrayUtil<ChatMessage> liRecords = new ArrayUtil<ChatMessage>(pMessages.size());
+		
+		for (Message msg : pMessages)
+		{
+			ChatMessage cmsg = msg.getChatMessage();
+			
+			hmpPending.put(cmsg, msg);
+			
+			liRecords.add(cmsg);
+		}
+		
+		try
+		{
+			model.addMessages(pIndex, liRecords);
+		}
+		finally
+		{
+			hmpPending.clear();
+		}
+	}
+	
+	/**
+	 * Removes the given message.
+	 * 
+	 * @param pMessage the message
+	 * @return <code>true</code> if the message was removed
+	 */
+	public boolean removeMessage(Message pMessage)
+	{
+		int iIndex = indexOfMessage(pMessage);
+		
+		if (iIndex < 0)
+		{
+			return false;
+		}
+		
+		model.removeMessage(iIndex);
+		
+		return true;
+	}
+	
+	/**
+	 * Adds a message after all model messages. Tail messages are not part of the model and 
+	 * new model messages will be inserted before them, without moving any other message.
+	 * 
+	 * @param pMessage the message
+	 */
+	public void addTailMessage(Message pMessage)
+	{
+		int iIndex = iRowCount;
+		
+		insertRows(iIndex, 1);
+		
+		views[iIndex] = pMessage;
+		
+		whmpIndex.put(pMessage, Integer.valueOf(iIndex));
+		
+		liTail.add(pMessage);
+		
+		int iWidth = getWidth();
+		
+		if (iWidth > 0)
+		{
+			getMessageHeight(iIndex, iWidth);
+		}
+		
+		revalidate();
+		repaint();
+	}
+	
+	/**
+	 * Removes a tail message.
+	 * 
+	 * @param pMessage the message
+	 * @return <code>true</code> if the message was removed
+	 */
+	public boolean removeTailMessage(Message pMessage)
+	{
+		int iTailIndex = liTail.indexOfReference(pMessage);
+		
+		if (iTailIndex < 0)
+		{
+			return false;
+		}
+		
+		liTail.remove(iTailIndex);
+		
+		removeRows(iCount + iTailIndex, 1);
+		
+		revalidate();
+		repaint();
+		
+		return true;
+	}
+	
+	/**
+	 * Updates the model with the current state of the given message.
+	 * 
+	 * @param pMessage the changed message
+	 */
+	void messageChanged(Message pMessage)
+	{
+		int iIndex = indexOfMessage(pMessage);
+		
+		if (iIndex >= 0)
+		{
+			model.setMessage(iIndex, pMessage.getChatMessage());
+		}
+		else
+		{
+			iIndex = liTail.indexOfReference(pMessage);
+			
+			if (iIndex >= 0)
+			{
+				iaMeasuredWidth[iCount + iIndex] = -1;
+				
+				revalidate();
+			}
+		}
+	}
+	
+	/**
+	 * Gets the view for the message at the given position. The view won't be recycled and stays
+	 * bound to the message, as long as it's used outside of the list.
+	 * 
+	 * @param pIndex the position
+	 * @return the message
+	 */
+	public Message getMessage(int pIndex)
+	{
+		Message msg = getView(pIndex);
+		
+		if (waShared[pIndex] == null)
+		{
+			waShared[pIndex] = new WeakReference<Message>(msg);
+		}
+		
+		if (pIndex < iRealizedFirst || pIndex >= iRealizedLast)
+		{
+			views[pIndex] = null;
+		}
+		
+		return msg;
+	}
+	
+	/**
+	 * Gets the position of the given message view.
+	 * 
+	 * @param pMessage the message
+	 * @return the position or <code>-1</code> if the message wasn't found
+	 */
+	public int indexOfMessage(Message pMessage)
+	{
+		Integer iIndex = whmpIndex.get(pMessage);
+		
+		if (iIndex == null || iIndex.intValue() >= iCount)
+		{
+			return -1;
+		}
+		
+		return iIndex.intValue();
+	}
+	
+	/**
+	 * Sets whether measuring with a new width is deferred. Already measured messages keep their 
+	 * height until the reflow isn't deferred anymore. Only the visible messages will be measured 
+	 * afterwards, other messages will be measured when they become visible.
+	 * 
+	 * @param pDeferred <code>true</code> to defer measuring, <code>false</code> to reflow
+	 */
+	void setReflowDeferred(boolean pDeferred)
+	{
+		if (bReflowDeferred != pDeferred)
+		{
+			bReflowDeferred = pDeferred;
+			
+			if (!pDeferred)
+			{
+				revalidate();
+				repaint();
+			}
+		}
+	}
+	
+	/**
+	 * Sets whether the list paints the chat background. The list will be opaque, so that the 
+	 * viewport is able to copy already painted pixels while scrolling.
+	 * 
+	 * @param pPainted <code>true</code> to paint the background
+	 */
+	void setBackgroundPainted(boolean pPainted)
+	{
+		if (bBackgroundPainted != pPainted)
+		{
+			bBackgroundPainted = pPainted;
+			
+			repaint();
+		}
+	}
+	
+	/**
+	 * Gets whether the list is shown in a viewport. Without a viewport, e.g. before the list is
+	 * displayed, no message is visible.
+	 * 
+	 * @return <code>true</code> if the list is shown in a viewport, <code>false</code> otherwise
+	 */
+	public boolean isInViewport()
+	{
+		return viewport != null;
+	}
+	
+	/**
+	 * Gets the position of the first visible message.
+	 * 
+	 * @return the position or <code>0</code> if no message is visible
+	 */
+	public int getFirstVisibleIndex()
+	{
+		if (iRowCount == 0 || viewport == null)
+		{
+			return 0;
+		}
+		
+		return getIndexAt(viewport.getViewPosition().y);
+	}
+	
+	/**
+	 * Gets the position of the message at the given location.
+	 * 
+	 * @param pLocation the location, relative to the list
+	 * @return the position or <code>-1</code> if there's no message at the location
+	 */
+	public int locationToIndex(Point pLocation)
+	{
+		if (pLocation.y < 0 || pLocation.y >= getTotalHeight())
+		{
+			return -1;
+		}
+		
+		return getIndexAt(pLocation.y);
+	}
+	
+	/**
+	 * Gets the bounds of the message at the given position. The height of a message which wasn't
+	 * shown yet, is estimated.
+	 * 
+	 * @param pIndex the position
+	 * @return the bounds, relative to the list
+	 */
+	public Rectangle getMessageBounds(int pIndex)
+	{
+		return new Rectangle(0, (int)heights.getSum(pIndex), getWidth(), heights.get(pIndex));
+	}
+	
+	/**
+	 * Scrolls the message at the given position into the visible area.
+	 * 
+	 * @param pIndex the position
+	 */
+	public void scrollToMessage(int pIndex)
+	{
+		scrollRectToVisible(getMessageBounds(pIndex));
+	}
+	
+	/**
+	 * Gets the number of messages.
+	 * 
+	 * @return the number of messages
+	 */
+	public int getMessageCount()
+	{
+		return iCount;
+	}
+	
+	/**
+	 * Gets the views for all messages. Be careful, because this creates a view for every message
+	 * of the model.
+	 * 
+	 * @return the messages
+	 */
+	public Message[] getMessages()
+	{
+		Message[] messages = new Message[iCount];
+		
+		for (int i = 0; i < iCount; i++)
+		{
+			messages[i] = getMessage(i);
+		}
+		
+		return messages;
+	}
+	
+	/**
+	 * Gets the view for the message at the given position. A recycled view will be used, if
+	 * available.
+	 * 
+	 * @param pIndex the position
+	 * @return the view
+	 */
+	private Message getView(int pIndex)
+	{
+		Message msg = getBoundView(pIndex);
+		
+		if (msg != null)
+		{
+			views[pIndex] = msg;
+		}
+		else
+		{
+			waShared[pIndex] = null;
+			
+			ChatMessage cmsg = model.getMessage(pIndex);
+			
+			ArrayUtil<Message> liPool = cmsg.getType() == Type.Left ? liPoolLeft : liPoolRight;
+			
+			if (liPool.isEmpty())
+			{
+				msg = new Message(chat, cmsg);
+			}
+			else
+			{
+				msg = liPool.removeLast();
+				msg.bind(cmsg);
+			}
+			
+			views[pIndex] = msg;
+			
+			whmpIndex.put(msg, Integer.valueOf(pIndex));
+		}
+		
+		return msg;
+	}
+	
+	/**
+	 * Gets the view which is bound to the message at the given position, without creating one.
+	 * 
+	 * @param pIndex the position
+	 * @return the view or <code>null</code> if no view is bound
+	 */
+	private Message getBoundView(int pIndex)
+	{
+		Message msg = views[pIndex];
+		
+		if (msg == null && waShared[pIndex] != null)
+		{
+			msg = waShared[pIndex].get();
+		}
+		
+		return msg;
+	}
+	
+	/**
+	 * Releases the views of the old realized range which are not part of the new realized range.
+	 * Views which are not used outside of the list will be recycled.
+	 * 
+	 * @param pOldFirst the first old realized message
+	 * @param pOldLast the last old realized message (exclusive)
+	 * @param pNewFirst the first new realized message
+	 * @param pNewLast the last new realized message (exclusive)
+	 */
+	private void releaseViews(int pOldFirst, int pOldLast, int pNewFirst, int pNewLast)
+	{
+		for (int i = pOldFirst, cnt = Math.min(pOldLast, iRowCount); i < cnt; i++)
+		{
+			if (i < pNewFirst || i >= pNewLast)
+			{
+				releaseView(i);
+			}
+		}
+	}
+	
+	/**
+	 * Releases the view of the message at the given position.
+	 * 
+	 * @param pIndex the position
+	 */
+	private void releaseView(int pIndex)
+	{
+		Message msg = views[pIndex];
+		
+		if (msg != null)
+		{
+			if (msg.getParent() == this)
+			{
+				remove(msg);
+			}
+			
+			//tail messages are not part of the model
+			if (pIndex < iCount)
+			{
+				views[pIndex] = null;
+				
+				if (waShared[pIndex] == null)
+				{
+					recycleView(msg);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Puts a view into the pool of recycled views, if the pool is not full.
+	 * 
+	 * @param pMessage the view
+	 */
+	private void recycleView(Message pMessage)
+	{
+		whmpIndex.remove(pMessage);
+		
+		ArrayUtil<Message> liPool = pMessage.getType() == Type.Left ? liPoolLeft : liPoolRight;
+		
+		if (liPool.size() < MAX_POOL_SIZE)
+		{
+			liPool.add(pMessage);
+		}
+	}
+	
+	/**
+	 * Moves the positions of the bound views after rows were inserted or removed.
+	 * 
+	 * @param pIndex the first moved position
+	 * @param pDelta the number of inserted (positive) or removed (negative) rows
+	 */
+	private void moveIndexes(int pIndex, int pDelta)
+	{
+		for (Map.Entry<Message, Integer> entry : whmpIndex.entrySet())
+		{
+			int iIndex = entry.getValue().intValue();
+			
+			if (iIndex >= pIndex)
+			{
+				entry.setValue(Integer.valueOf(iIndex + pDelta));
+			}
+		}
+	}
+	
+	/**
+	 * Creates an array for references to shared views.
+	 * 
+	 * @param pSize the size
+	 * @return the array
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static WeakReference<Message>[] createReferences(int pSize)
+	{
+		return new WeakReference[pSize];
+	}
+	
+	/**
+	 * Inserts rows for new messages.
+	 * 
+	 * @param pIndex the first position
+	 * @param pLength the number of rows
+	 */
+	private void insertRows(int pIndex, int pLength)
+	{
+		if (pLength <= 0)
+		{
+			return;
+		}
+		
+		int iNewCount = iRowCount + pLength;
+		
+		if (iNewCount > views.length)
+		{
+			int iNewSize = Math.max(iNewCount, views.length * 3 / 2 + 1);
+			
+			Message[] newViews = new Message[iNewSize];
+			System.arraycopy(views, 0, newViews, 0, iRowCount);
+			views = newViews;
+			
+			WeakReference<Message>[] waNewShared = createReferences(iNewSize);
+			System.arraycopy(waShared, 0, waNewShared, 0, iRowCount);
+			waShared = waNewShared;
+			
+			int[] iaNewWidth = new int[iNewSize];
+			System.arraycopy(iaMeasuredWidth, 0, iaNewWidth, 0, iRowCount);
+			iaMeasuredWidth = iaNewWidth;
+		}
+		
+		int iMove = iRowCount - pIndex;
+		
+		if (iMove > 0)
+		{
+			System.arraycopy(views, pIndex, views, pIndex + pLength, iMove);
+			System.arraycopy(waShared, pIndex, waShared, pIndex + pLength, iMove);
+			System.arraycopy(iaMeasuredWidth, pIndex, iaMeasuredWidth, pIndex + pLength, iMove);
+			
+			moveIndexes(pIndex, pLength);
+		}
+		
+		for (int i = pIndex, cnt = pIndex + pLength; i < cnt; i++)
+		{
+			views[i] = null;
+			waShared[i] = null;
+			iaMeasuredWidth[i] = -1;
+		}
+		
+		heights.insert(pIndex, pLength, ESTIMATED_HEIGHT);
+		
+		iRowCount = iNewCount;
+		
+		//keep the realized range in sync
+		if (pIndex <= iRealizedFirst)
+		{
+			iRealizedFirst += pLength;
+			iRealizedLast += pLength;
+		}
+		else if (pIndex < iRealizedLast)
+		{
+			iRealizedLast += pLength;
+		}
+	}
+	
+	/**
+	 * Removes the rows of removed messages.
+	 * 
+	 * @param pIndex the first position
+	 * @param pLength the number of rows
+	 */
+	private void removeRows(int pIndex, int pLength)
+	{
+		if (pLength <= 0)
+		{
+			return;
+		}
+		
+		for (int i = pIndex, cnt = pIndex + pLength; i < cnt; i++)
+		{
+			Message msg = getBoundView(i);
+			
+			if (msg != null)
+			{
+				if (msg.getParent() == this)
+				{
+					remove(msg);
+				}
+				
+				//the view isn't connected to the model anymore
+				if (waShared[i] == null)
+				{
+					recycleView(msg);
+				}
+				else
+				{
+					whmpIndex.remove(msg);
+				}
+			}
+		}
+		
+		int iMove = iRowCount - pIndex - pLength;
+		
+		if (iMove > 0)
+		{
+			System.arraycopy(views, pIndex + pLength, views, pIndex, iMove);
+			System.arraycopy(waShared, pIndex + pLength, waShared, pIndex, iMove);
+			System.arraycopy(iaMeasuredWidth, pIndex + pLength, iaMeasuredWidth, pIndex, iMove);
+			
+			moveIndexes(pIndex + pLength, -pLength);
+		}
+		
+		iRowCount -= pLength;
+		
+		heights.remove(pIndex, pLength);
+		
+		for (int i = iRowCount, cnt = iRowCount + pLength; i < cnt; i++)
+		{
+			views[i] = null;
+			waShared[i] = null;
+		}
+		
+		//keep the realized range in sync
+		int iEnd = pIndex + pLength;
+		
+		iRealizedFirst = adjustRemoved(iRealizedFirst, pIndex, iEnd);
+		iRealizedLast = adjustRemoved(iRealizedLast, pIndex, iEnd);
+	}
+	
+	/**
+	 * Adjusts a position after a range was removed.
+	 * 
+	 * @param pPosition the position
+	 * @param pStart the first removed position
+	 * @param pEnd the last removed position (exclusive)
+	 * @return the adjusted position
+	 */
+	private static int adjustRemoved(int pPosition, int pStart, int pEnd)
+	{
+		if (pPosition >= pEnd)
+		{
+			return pPosition - (pEnd - pStart);
+		}
+		else if (pPosition > pStart)
+		{
+			return pStart;
+		}
+		
+		return pPosition;
+	}
+	
+	/**
+	 * Remembers the first visible message and its distance to the view position, if not already
+	 * done. The next layout restores the view position relative to this message.
+	 */
+	private void captureAnchor()
+	{
+		if (iAnchorIndex < 0 && viewport != null)
+		{
+			int y = viewport.getViewPosition().y;
+			
+			iAnchorIndex = getIndexAt(y);
+			iAnchorDelta = y - (int)heights.getSum(iAnchorIndex);
+		}
+	}
+	
+	/**
+	 * Gets the height of all messages.
+	 * 
+	 * @return the height
+	 */
+	private int getTotalHeight()
+	{
+		return (int)heights.getTotal();
+	}
+	
+	/**
+	 * Gets the position of the message at the given vertical position.
+	 * 
+	 * @param pY the vertical position
+	 * @return the message position
+	 */
+	private int getIndexAt(int pY)
+	{
+		return Math.max(0, heights.indexOf(pY));
+	}
+	
+	/**
+	 * Gets the height of the message at the given position and measures the message if the 
+	 * cached height is not valid for the given width.
+	 * 
+	 * @param pIndex the message position
+	 * @param pWidth the available width
+	 * @return the height
+	 */
+	private int getMessageHeight(int pIndex, int pWidth)
+	{
+		if (bReflowDeferred && iaMeasuredWidth[pIndex] >= 0)
+		{
+			//keep the height until the width is stable
+			return heights.get(pIndex);
+		}
+		
+		Message msg = getBoundView(pIndex);
+		
+		if (iaMeasuredWidth[pIndex] != pWidth || (msg != null && !msg.isValid()))
+		{
+			heights.set(pIndex, getView(pIndex).measure(pWidth));
+			
+			iaMeasuredWidth[pIndex] = pWidth;
+		}
+		
+		return heights.get(pIndex);
+	}
+	
+}	// MessageList
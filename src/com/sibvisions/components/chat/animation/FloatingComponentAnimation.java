@@ -78,6 +78,8 @@ public class FloatingComponentAnimation
         animator.setResolution(1);
         animator.setAcceleration(.5f);
         animator.setDeceleration(.5f);
+        
+        FrameClock.attach(animator, pComponent);
     }
 
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.animation;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+
+import javax.swing.Timer;
+
+import org.jdesktop.animation.timing.Animator;
+import org.jdesktop.animation.timing.TimingSource;
+
+import com.sibvisions.util.ArrayUtil;
+
+/**
+ * The <code>FrameClock</code> is the shared clock for all chat animations. It fires one pulse per
+ * display frame and all running animations will be updated within the same pulse, so that their
+ * repaints and layouts will be coalesced into one paint pass. Animations of components which
+ * are not showing won't be updated and the clock suspends itself if no animated component is
+ * showing. Animations of components which are no longer displayable will be dropped from the 
+ * clock, so that removed components aren't referenced. They continue if the component will be
+ * displayable again.
+ * 
+ * @author René Jahn
+ */
+public final class FrameClock
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the frame interval (ms). */
+	public static final int FRAME_INTERVAL = 16;
+	
+	/** the running sources. */
+	private static ArrayUtil<FrameTimingSource> liRunning = new ArrayUtil<FrameTimingSource>();
+	
+	/** the pulse listeners. */
+	private static ArrayUtil<ActionListener> liListeners = new ArrayUtil<ActionListener>();
+	
+	/** the frame timer. */
+	private static Timer tiFrame;
+	
+	/** the number of pulses. */
+	private static long lPulses;
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Invisible constructor because <code>FrameClock</code> is a utility class.
+	 */
+	private FrameClock()
+	{
+		// No instance needed.
+	}
+
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	
+	/**
+	 * Connects the given animator with the clock. The animator must not be running.
+	 * 
+	 * @param pAnimator the animator
+	 * @param pComponent the animated component. The animation will be suspended while the
+	 *                   component is not showing
+	 */
+	public static void attach(Animator pAnimator, Component pComponent)
+	{
+		pAnimator.setTimer(new FrameTimingSource(pComponent));
+	}
+	
+	/**
+	 * Adds a listener which will be notified with every pulse, e.g. for animations which are not
+	 * bound to one component. The clock runs as long as listeners are registered, so the listener
+	 * has to remove itself if it doesn't need more pulses.
+	 * 
+	 * @param pListener the listener
+	 */
+	public static void addPulseListener(ActionListener pListener)
+	{
+		if (!liListeners.contains(pListener))
+		{
+			liListeners.add(pListener);
+		}
+		
+		resume();
+	}
+	
+	/**
+	 * Removes a pulse listener.
+	 * 
+	 * @param pListener the listener
+	 */
+	public static void removePulseListener(ActionListener pListener)
+	{
+		liListeners.remove(pListener);
+		
+		suspendIfIdle();
+	}
+	
+	/**
+	 * Gets whether the clock is running.
+	 * 
+	 * @return <code>true</code> if at least one animation is running and showing or a pulse
+	 *         listener is registered
+	 */
+	public static boolean isRunning()
+	{
+		return tiFrame != null && tiFrame.isRunning();
+	}
+	
+	/**
+	 * Gets the number of running animations, including suspended animations of components which 
+	 * are displayable.
+	 * 
+	 * @return the number of animations
+	 */
+	public static int getAnimationCount()
+	{
+		return liRunning.size();
+	}
+	
+	/**
+	 * Gets the number of fired pulses.
+	 * 
+	 * @return the number of pulses
+	 */
+	public static long getPulseCount()
+	{
+		return lPulses;
+	}
+	
+	/**
+	 * Registers a started source.
+	 * 
+	 * @param pSource the source
+	 */
+	private static void register(FrameTimingSource pSource)
+	{
+		if (!liRunning.contains(pSource))
+		{
+			liRunning.add(pSource);
+		}
+		
+		resume();
+	}
+	
+	/**
+	 * Unregisters a stopped source.
+	 * 
+	 * @param pSource the source
+	 */
+	private static void unregister(FrameTimingSource pSource)
+	{
+		liRunning.remove(pSource);
+		
+		suspendIfIdle();
+	}
+	
+	/**
+	 * Stops the frame timer, if there are no running animations and no pulse listeners.
+	 */
+	private static void suspendIfIdle()
+	{
+		if (liRunning.isEmpty() && liListeners.isEmpty() && tiFrame != null)
+		{
+			tiFrame.stop();
+		}
+	}
+	
+	/**
+	 * Starts the frame timer, if there are running animations.
+	 */
+	private static void resume()
+	{
+		if (liRunning.isEmpty() && liListeners.isEmpty())
+		{
+			return;
+		}
+		
+		if (tiFrame == null)
+		{
+			tiFrame = new Timer(FRAME_INTERVAL, new ActionListener()
+			{
+				@Override
+				public void actionPerformed(ActionEvent pEvent)
+				{
+					pulse(pEvent);
+				}
+			});
+			tiFrame.setCoalesce(true);
+		}
+		
+		if (!tiFrame.isRunning())
+		{
+			tiFrame.start();
+		}
+	}
+	
+	/**
+	 * Updates all running animations and notifies the pulse listeners. The clock will be 
+	 * suspended if no animated component is showing and no pulse listener is registered.
+	 * 
+	 * @param pEvent the timer event
+	 */
+	private static void pulse(ActionEvent pEvent)
+	{
+		lPulses++;
+		
+		long lNow = System.currentTimeMillis();
+		
+		boolean bShowing = false;
+		
+		//backwards, because animations will be removed if they end
+		for (int i = liRunning.size() - 1; i >= 0; i--)
+		{
+			if (i < liRunning.size())
+			{
+				FrameTimingSource source = liRunning.get(i);
+				
+				if (!source.component.isDisplayable())
+				{
+					//the component holds the source, until it will be displayable again
+					source.bDropped = true;
+					
+					liRunning.remove(i);
+				}
+				else if (source.component.isShowing())
+				{
+					bShowing = true;
+					
+					if (lNow >= source.lStart)
+					{
+						source.fire();
+					}
+				}
+			}
+		}
+		
+		//backwards, because listeners may remove themselves
+		for (int i = liListeners.size() - 1; i >= 0; i--)
+		{
+			if (i < liListeners.size())
+			{
+				liListeners.get(i).actionPerformed(pEvent);
+			}
+		}
+		
+		if (!bShowing && liListeners.isEmpty())
+		{
+			tiFrame.stop();
+		}
+	}
+	
+    //****************************************************************
+    // Subclass definition
+    //****************************************************************
+	
+	/**
+	 * The <code>FrameTimingSource</code> is the {@link TimingSource} of an animator which is
+	 * driven by the clock.
+	 * 
+	 * @author René Jahn
+	 */
+	private static final class FrameTimingSource extends TimingSource
+	                                             implements HierarchyListener
+	{
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Class members
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/** the animated component. */
+		private Component component;
+		
+		/** the start delay. */
+		private int iStartDelay;
+		
+		/** the time of the first frame. */
+		private long lStart;
+		
+		/** whether the source was dropped from the clock because the component isn't displayable. */
+		private boolean bDropped;
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Initialization
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/**
+		 * Creates a new instance of <code>FrameTimingSource</code>.
+		 * 
+		 * @param pComponent the animated component
+		 */
+		private FrameTimingSource(Component pComponent)
+		{
+			component = pComponent;
+		}
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Interface implementation
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void hierarchyChanged(HierarchyEvent pEvent)
+		{
+			if ((pEvent.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0)
+			{
+				if (component.isDisplayable())
+				{
+					if (bDropped)
+					{
+						bDropped = false;
+						
+						register(this);
+					}
+				}
+				else if (!bDropped)
+				{
+					//the clock may be suspended and wouldn't drop the source
+					bDropped = true;
+					
+					unregister(this);
+				}
+			}
+			
+			if ((pEvent.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && component.isShowing())
+			{
+				resume();
+			}
+		}
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Abstract methods implementation
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		@Override
+		public void start()
+		{
+			lStart = System.currentTimeMillis() + iStartDelay;
+			bDropped = false;
+			
+			component.removeHierarchyListener(this);
+			component.addHierarchyListener(this);
+			
+			register(this);
+		}
+		
+		@Override
+		public void stop()
+		{
+			component.removeHierarchyListener(this);
+			
+			bDropped = false;
+			
+			unregister(this);
+		}
+		
+		@Override
+		public void setResolution(int pResolution)
+		{
+			//always one frame
+		}
+		
+		@Override
+		public void setStartDelay(int pDelay)
+		{
+			iStartDelay = pDelay;
+		}
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // User-defined methods
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/**
+		 * Notifies the animator about the next frame.
+		 */
+		private void fire()
+		{
+			timingEvent();
+		}
+		
+	}	// FrameTimingSource
+	
+}	// FrameClock
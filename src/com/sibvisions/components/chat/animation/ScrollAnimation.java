@@ -57,6 +57,8 @@ public class ScrollAnimation
         animator.setAcceleration(.5f);
         animator.setDeceleration(.5f);
         
+        FrameClock.attach(animator, pComponent);
+        
         animator.addTarget(new TimingTargetAdapter() 
         {
             @Override
@@ -0,0 +1,542 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.component;
+
+import java.awt.AlphaComposite;
+import java.awt.Component;
+import java.awt.Frame;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Window;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.Icon;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import com.sibvisions.components.chat.animation.FrameClock;
+import com.sibvisions.util.WeakIdentityHashMap;
+
+/**
+ * The <code>AnimatedIcon</code> shows an animated GIF. All frames will be decoded once and the
+ * current frame depends on the time, so all components show the same frame. Only the bounds of
+ * the icon will be repainted, the frame rate is limited and components which are not visible,
+ * e.g. scrolled out of view or in a minimized window, won't be repainted. The frames are driven
+ * by the {@link FrameClock}, so the repaints are coalesced with other chat animations. The 
+ * animation stops if the icon wasn't painted since the last frame and starts again with the 
+ * next paint.
+ * 
+ * @author René Jahn
+ */
+public class AnimatedIcon implements Icon
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the default maximum frame rate. */
+	private static final int DEFAULT_FRAME_RATE = 15;
+	
+	/** the minimum frame delay (ms), same as browsers. */
+	private static final int MINIMUM_DELAY = 20;
+	
+	/** the frames. */
+	private BufferedImage[] imgFrames;
+	
+	/** the end time of each frame, relative to the animation start (ms). */
+	private int[] iaFrameEnd;
+	
+	/** the components with the last painted icon bounds. */
+	private WeakIdentityHashMap<Component, Rectangle> whmpPainted = new WeakIdentityHashMap<Component, Rectangle>();
+	
+	/** the visible rectangle, re-used. */
+	private Rectangle rectVisible = new Rectangle();
+	
+	/** the clock listener. */
+	private ActionListener lisPulse;
+	
+	/** the time of the next frame (ms). */
+	private long lNextFrame;
+	
+	/** the duration of one animation cycle (ms). */
+	private int iDuration;
+	
+	/** the width. */
+	private int iWidth;
+	
+	/** the height. */
+	private int iHeight;
+	
+	/** the maximum frame rate. */
+	private int iFrameRate = DEFAULT_FRAME_RATE;
+	
+	/** the last shown frame. */
+	private int iLastFrame = -1;
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Creates a new instance of <code>AnimatedIcon</code>.
+	 * 
+	 * @param pUrl the url of the GIF image
+	 * @throws IOException if reading the image failed
+	 */
+	public AnimatedIcon(URL pUrl) throws IOException
+	{
+		if (pUrl == null)
+		{
+			throw new IOException("Image not found!");
+		}
+		
+		Iterator<ImageReader> itReaders = ImageIO.getImageReadersByFormatName("gif");
+		
+		if (!itReaders.hasNext())
+		{
+			throw new IOException("No GIF reader available!");
+		}
+		
+		ImageReader reader = itReaders.next();
+		
+		try
+		{
+			//closing the image stream doesn't close the url stream
+			InputStream in = pUrl.openStream();
+			
+			try
+			{
+				ImageInputStream stream = ImageIO.createImageInputStream(in);
+				
+				if (stream == null)
+				{
+					throw new IOException("Image can't be read!");
+				}
+				
+				try
+				{
+					reader.setInput(stream);
+					
+					decode(reader);
+				}
+				finally
+				{
+					stream.close();
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		finally
+		{
+			reader.dispose();
+		}
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Interface implementation
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void paintIcon(Component pComponent, Graphics pGraphics, int pX, int pY)
+	{
+		int iFrame = getFrameIndex(System.currentTimeMillis());
+		
+		pGraphics.drawImage(imgFrames[iFrame], pX, pY, null);
+		
+		if (imgFrames.length > 1 && pComponent != null)
+		{
+			Rectangle rect = whmpPainted.get(pComponent);
+			
+			if (rect == null)
+			{
+				whmpPainted.put(pComponent, new Rectangle(pX, pY, iWidth, iHeight));
+			}
+			else
+			{
+				rect.setBounds(pX, pY, iWidth, iHeight);
+			}
+			
+			start();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getIconWidth()
+	{
+		return iWidth;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getIconHeight()
+	{
+		return iHeight;
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Sets the maximum frame rate. The animation won't be faster than the frame delays of the 
+	 * image.
+	 * 
+	 * @param pFrameRate the frames per second
+	 */
+	public void setMaximumFrameRate(int pFrameRate)
+	{
+		iFrameRate = Math.max(1, pFrameRate);
+	}
+	
+	/**
+	 * Gets the maximum frame rate.
+	 * 
+	 * @return the frames per second
+	 */
+	public int getMaximumFrameRate()
+	{
+		return iFrameRate;
+	}
+	
+	/**
+	 * Gets whether the animation is running.
+	 * 
+	 * @return <code>true</code> if running, <code>false</code> if no component showed the icon 
+	 *         since the last frame
+	 */
+	public boolean isRunning()
+	{
+		return lisPulse != null;
+	}
+	
+	/**
+	 * Gets the number of frames.
+	 * 
+	 * @return the number of frames
+	 */
+	public int getFrameCount()
+	{
+		return imgFrames.length;
+	}
+	
+	/**
+	 * Decodes all frames of the image.
+	 * 
+	 * @param pReader the reader
+	 * @throws IOException if reading failed
+	 */
+	private void decode(ImageReader pReader) throws IOException
+	{
+		int iCount = pReader.getNumImages(true);
+		
+		if (iCount <= 0)
+		{
+			throw new IOException("Image has no frames!");
+		}
+		
+		IIOMetadataNode nodeScreen = getNode(pReader.getStreamMetadata() != null 
+				                             ? (IIOMetadataNode)pReader.getStreamMetadata().getAsTree("javax_imageio_gif_stream_1.0") : null, 
+				                             "LogicalScreenDescriptor");
+		
+		if (nodeScreen != null)
+		{
+			iWidth = Integer.parseInt(nodeScreen.getAttribute("logicalScreenWidth"));
+			iHeight = Integer.parseInt(nodeScreen.getAttribute("logicalScreenHeight"));
+		}
+		else
+		{
+			iWidth = pReader.getWidth(0);
+			iHeight = pReader.getHeight(0);
+		}
+		
+		imgFrames = new BufferedImage[iCount];
+		iaFrameEnd = new int[iCount];
+		
+		BufferedImage imgCanvas = new BufferedImage(iWidth, iHeight, BufferedImage.TYPE_INT_ARGB);
+		
+		Graphics2D g2 = imgCanvas.createGraphics();
+		
+		try
+		{
+			for (int i = 0; i < iCount; i++)
+			{
+				BufferedImage imgFrame = pReader.read(i);
+				
+				IIOMetadataNode nodeImage = (IIOMetadataNode)pReader.getImageMetadata(i).getAsTree("javax_imageio_gif_image_1.0");
+				IIOMetadataNode nodeDescriptor = getNode(nodeImage, "ImageDescriptor");
+				IIOMetadataNode nodeControl = getNode(nodeImage, "GraphicControlExtension");
+				
+				int iX = nodeDescriptor != null ? Integer.parseInt(nodeDescriptor.getAttribute("imageLeftPosition")) : 0;
+				int iY = nodeDescriptor != null ? Integer.parseInt(nodeDescriptor.getAttribute("imageTopPosition")) : 0;
+				
+				int iDelay = 0;
+				String sDisposal = null;
+				
+				if (nodeControl != null)
+				{
+					iDelay = Integer.parseInt(nodeControl.getAttribute("delayTime")) * 10;
+					sDisposal = nodeControl.getAttribute("disposalMethod");
+				}
+				
+				BufferedImage imgPrevious = null;
+				
+				if ("restoreToPrevious".equals(sDisposal))
+				{
+					imgPrevious = copy(imgCanvas);
+				}
+				
+				g2.drawImage(imgFrame, iX, iY, null);
+				
+				imgFrames[i] = copy(imgCanvas);
+				
+				iDuration += Math.max(MINIMUM_DELAY, iDelay);
+				iaFrameEnd[i] = iDuration;
+				
+				if ("restoreToBackgroundColor".equals(sDisposal))
+				{
+					g2.setComposite(AlphaComposite.Clear);
+					g2.fillRect(iX, iY, imgFrame.getWidth(), imgFrame.getHeight());
+					g2.setComposite(AlphaComposite.SrcOver);
+				}
+				else if (imgPrevious != null)
+				{
+					g2.setComposite(AlphaComposite.Src);
+					g2.drawImage(imgPrevious, 0, 0, null);
+					g2.setComposite(AlphaComposite.SrcOver);
+				}
+			}
+		}
+		finally
+		{
+			g2.dispose();
+		}
+	}
+	
+	/**
+	 * Gets the first child node with the given name.
+	 * 
+	 * @param pNode the parent node
+	 * @param pName the node name
+	 * @return the node or <code>null</code> if not found
+	 */
+	private static IIOMetadataNode getNode(IIOMetadataNode pNode, String pName)
+	{
+		if (pNode == null)
+		{
+			return null;
+		}
+		
+		if (pNode.getElementsByTagName(pName).getLength() > 0)
+		{
+			return (IIOMetadataNode)pNode.getElementsByTagName(pName).item(0);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Creates a copy of the given image.
+	 * 
+	 * @param pImage the image
+	 * @return the copy
+	 */
+	private static BufferedImage copy(BufferedImage pImage)
+	{
+		BufferedImage img = new BufferedImage(pImage.getWidth(), pImage.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		
+		pImage.copyData(img.getRaster());
+		
+		return img;
+	}
+	
+	/**
+	 * Gets the frame for the given time.
+	 * 
+	 * @param pTime the time (ms)
+	 * @return the frame index
+	 */
+	private int getFrameIndex(long pTime)
+	{
+		if (imgFrames.length == 1)
+		{
+			return 0;
+		}
+		
+		int iTime = (int)(pTime % iDuration);
+		
+		for (int i = 0; i < iaFrameEnd.length; i++)
+		{
+			if (iTime < iaFrameEnd[i])
+			{
+				return i;
+			}
+		}
+		
+		return iaFrameEnd.length - 1;
+	}
+	
+	/**
+	 * Gets the frame interval.
+	 * 
+	 * @return the interval (ms)
+	 */
+	private int getFrameInterval()
+	{
+		//not faster than the fastest frame
+		int iMinDelay = iaFrameEnd[0];
+		
+		for (int i = 1; i < iaFrameEnd.length; i++)
+		{
+			iMinDelay = Math.min(iMinDelay, iaFrameEnd[i] - iaFrameEnd[i - 1]);
+		}
+		
+		return Math.max(iMinDelay, 1000 / iFrameRate);
+	}
+	
+	/**
+	 * Starts the animation, if not already running.
+	 */
+	private void start()
+	{
+		if (lisPulse == null)
+		{
+			lisPulse = new ActionListener()
+			{
+				@Override
+				public void actionPerformed(ActionEvent pEvent)
+				{
+					long lNow = System.currentTimeMillis();
+					
+					//limit the frame rate
+					if (lNow >= lNextFrame)
+					{
+						lNextFrame = lNow + getFrameInterval();
+						
+						nextFrame(lNow);
+					}
+				}
+			};
+			
+			lNextFrame = System.currentTimeMillis() + getFrameInterval();
+			
+			FrameClock.addPulseListener(lisPulse);
+		}
+	}
+	
+	/**
+	 * Stops the animation.
+	 */
+	private void stop()
+	{
+		if (lisPulse != null)
+		{
+			FrameClock.removePulseListener(lisPulse);
+			
+			lisPulse = null;
+		}
+	}
+	
+	/**
+	 * Repaints the icon bounds of all visible components, if the frame has changed. The 
+	 * components have to paint the icon again to get the next frame.
+	 * 
+	 * @param pTime the current time (ms)
+	 */
+	private void nextFrame(long pTime)
+	{
+		if (whmpPainted.isEmpty())
+		{
+			stop();
+			
+			return;
+		}
+		
+		int iFrame = getFrameIndex(pTime);
+		
+		if (iFrame == iLastFrame)
+		{
+			return;
+		}
+		
+		iLastFrame = iFrame;
+		
+		for (Map.Entry<Component, Rectangle> entry : whmpPainted.entrySet())
+		{
+			Component comp = entry.getKey();
+			
+			if (comp != null && isVisible(comp))
+			{
+				Rectangle rect = entry.getValue();
+				
+				if (comp instanceof JComponent)
+				{
+					((JComponent)comp).computeVisibleRect(rectVisible);
+				}
+				else
+				{
+					rectVisible.setBounds(0, 0, comp.getWidth(), comp.getHeight());
+				}
+				
+				if (rectVisible.intersects(rect))
+				{
+					comp.repaint(rect.x, rect.y, rect.width, rect.height);
+				}
+			}
+		}
+		
+		//painted components register again
+		whmpPainted.clear();
+	}
+	
+	/**
+	 * Gets whether the given component is visible for the user.
+	 * 
+	 * @param pComponent the component
+	 * @return <code>true</code> if showing and the window is not minimized
+	 */
+	private static boolean isVisible(Component pComponent)
+	{
+		if (!pComponent.isShowing())
+		{
+			return false;
+		}
+		
+		Window win = SwingUtilities.getWindowAncestor(pComponent);
+		
+		return !(win instanceof Frame) || (((Frame)win).getExtendedState() & Frame.ICONIFIED) == 0;
+	}
+	
+}	// AnimatedIcon
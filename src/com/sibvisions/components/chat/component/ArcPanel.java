@@ -19,7 +19,6 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
 import java.awt.LayoutManager;
-import java.awt.RenderingHints;
 import java.awt.Shape;
 
 import javax.swing.border.Border;
@@ -76,7 +75,7 @@ public class ArcPanel extends BasePanel
 	        
 	        try
 	        {
-		        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		        RenderQuality.applyHints(g2, this);
 		        
 	        	g2.setColor(getBackground());
 	        
@@ -16,18 +16,14 @@
 package com.sibvisions.components.chat.component;
 
 import java.awt.Color;
-import java.awt.Composite;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 
 import javax.swing.JComponent;
 
-import com.sibvisions.util.type.ImageUtil;
-
 /**
  * The <code>Avatar</code> shows a round area with a resized image in this area. It doesn't show the
  * image with round clipping like other Avatar implementations.
@@ -38,6 +34,9 @@ public class Avatar extends JComponent
     // Class members
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 
+	/** the background of the avatar. */
+	private static final Color BACKGROUND = new Color(180, 180, 180, 90);
+	
 	/** the image. */
 	private Image image;
     
@@ -68,38 +67,21 @@ public class Avatar extends JComponent
         
         try
         {
-	        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+	        RenderQuality.applyHints(g2, this);
 	        
 	        if (image != null) 
 	        {
-	            int width = getWidth();
-	            int height = getHeight();
-	            
-	            int diameter = Math.min(width, height);
-	            
-	            BufferedImage img = new BufferedImage(diameter, diameter, BufferedImage.TYPE_INT_ARGB);
-	            Graphics2D g2Img = img.createGraphics();
-	            
-	            g2Img.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-	            g2Img.setColor(new Color(180, 180, 180, 90));
-	            g2Img.fillOval(0, 0, diameter, diameter);
+	            int diameter = Math.min(getWidth(), getHeight());
 	            
-	            Composite composite = g2Img.getComposite();
-	            
-	            try
-	            {
-	            	Image imgScaled = ImageUtil.getScaledImage(image, diameter - 10, diameter - 10, true);
-	            	
-		            g2Img.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-		            g2Img.drawImage(imgScaled, diameter - imgScaled.getWidth(this) - 5, diameter - imgScaled.getHeight(this) - 5, this);
-	            }
-	            finally
+	            if (diameter > 0)
 	            {
-		            g2Img.setComposite(composite);
-		            g2Img.dispose();
+		            //render with the device scale, in quarter steps
+		            float fScale = Math.max(4, (int)Math.ceil(g2.getTransform().getScaleX() * 4)) / 4f;
+		            
+		            BufferedImage img = AvatarCache.getAvatar(image, diameter, BACKGROUND, fScale);
+		            
+		            g2.drawImage(img, 0, 0, diameter, diameter, this);
 	            }
-	            
-	            g2.drawImage(img, 0, 0, this);
 	        }
         }
         finally
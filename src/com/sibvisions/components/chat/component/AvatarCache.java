@@ -0,0 +1,338 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.component;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+import com.sibvisions.util.ArrayUtil;
+import com.sibvisions.util.WeakIdentityHashMap;
+import com.sibvisions.util.type.ImageUtil;
+
+/**
+ * The <code>AvatarCache</code> keeps rendered avatars for all {@link Avatar}s. The source images 
+ * are weak keys, so avatars will be released together with their source image. The memory of all
+ * avatars is limited by a budget, the least recently used avatars will be removed first.
+ * 
+ * @author René Jahn
+ */
+public final class AvatarCache
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the default memory budget (bytes). */
+	private static final long DEFAULT_BUDGET = 4 * 1024 * 1024;
+	
+	/** the rendered avatars per source image. */
+	private static WeakIdentityHashMap<Image, ArrayUtil<Entry>> whmpAvatars = new WeakIdentityHashMap<Image, ArrayUtil<Entry>>();
+	
+	/** the memory budget. */
+	private static long lBudget = DEFAULT_BUDGET;
+	
+	/** the estimated memory of all avatars. */
+	private static long lSize;
+	
+	/** the access counter for LRU eviction. */
+	private static long lAccess;
+	
+	/** the number of cache hits. */
+	private static long lHits;
+	
+	/** the number of cache misses. */
+	private static long lMisses;
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Invisible constructor because <code>AvatarCache</code> is a utility class.
+	 */
+	private AvatarCache()
+	{
+		// No instance needed.
+	}
+
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	
+	/**
+	 * Gets the rendered avatar for the given image. The avatar is a filled circle with the scaled 
+	 * image in the bottom right area.
+	 * 
+	 * @param pImage the source image
+	 * @param pDiameter the diameter of the circle
+	 * @param pBackground the color of the circle
+	 * @param pScale the scale factor of the device, e.g. <code>2</code> for HiDPI displays
+	 * @return the avatar with <code>pDiameter * pScale</code> pixels
+	 */
+	public static synchronized BufferedImage getAvatar(Image pImage, int pDiameter, Color pBackground, float pScale)
+	{
+		int iRGB = pBackground.getRGB();
+		
+		ArrayUtil<Entry> liEntries = whmpAvatars.get(pImage);
+		
+		if (liEntries != null)
+		{
+			for (int i = 0, cnt = liEntries.size(); i < cnt; i++)
+			{
+				Entry entry = liEntries.get(i);
+				
+				if (entry.iDiameter == pDiameter && entry.iRGB == iRGB && entry.fScale == pScale)
+				{
+					entry.lLastAccess = ++lAccess;
+					
+					lHits++;
+					
+					return entry.image;
+				}
+			}
+		}
+		
+		lMisses++;
+		
+		BufferedImage img = render(pImage, pDiameter, pBackground, pScale);
+		
+		//not loaded images can't be cached
+		if (pImage.getWidth(null) > 0)
+		{
+			if (liEntries == null)
+			{
+				liEntries = new ArrayUtil<Entry>(2);
+				
+				whmpAvatars.put(pImage, liEntries);
+			}
+			
+			Entry entry = new Entry();
+			entry.image = img;
+			entry.iDiameter = pDiameter;
+			entry.iRGB = iRGB;
+			entry.fScale = pScale;
+			entry.lLastAccess = ++lAccess;
+			
+			liEntries.add(entry);
+			
+			lSize += getMemory(img);
+			
+			if (lSize > lBudget)
+			{
+				evict();
+			}
+		}
+		
+		return img;
+	}
+	
+	/**
+	 * Renders an avatar.
+	 * 
+	 * @param pImage the source image
+	 * @param pDiameter the diameter of the circle
+	 * @param pBackground the color of the circle
+	 * @param pScale the scale factor of the device
+	 * @return the avatar
+	 */
+	private static BufferedImage render(Image pImage, int pDiameter, Color pBackground, float pScale)
+	{
+		int iSize = Math.max(1, Math.round(pDiameter * pScale));
+		
+        BufferedImage img = new BufferedImage(iSize, iSize, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2Img = img.createGraphics();
+        
+        try
+        {
+	        g2Img.scale(pScale, pScale);
+	        g2Img.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+	        g2Img.setColor(pBackground);
+	        g2Img.fillOval(0, 0, pDiameter, pDiameter);
+	        
+	        int iImageSize = Math.max(1, Math.round((pDiameter - 10) * pScale));
+	        
+	    	Image imgScaled = ImageUtil.getScaledImage(pImage, iImageSize, iImageSize, true);
+	    	
+	    	int iWidth = imgScaled.getWidth(null);
+	    	int iHeight = imgScaled.getHeight(null);
+	    	
+	    	if (iWidth > 0 && iHeight > 0)
+	    	{
+		    	//draw the scaled image without scaling it again
+		    	g2Img.scale(1 / pScale, 1 / pScale);
+		        g2Img.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		        g2Img.drawImage(imgScaled, iSize - iWidth - Math.round(5 * pScale), iSize - iHeight - Math.round(5 * pScale), null);
+	    	}
+        }
+        finally
+        {
+            g2Img.dispose();
+        }
+        
+        return img;
+	}
+	
+	/**
+	 * Removes the least recently used avatars until the memory budget is reached.
+	 */
+	private static void evict()
+	{
+		//recalculate because of released source images
+		lSize = 0;
+		
+		for (ArrayUtil<Entry> liEntries : whmpAvatars.values())
+		{
+			for (int i = 0, cnt = liEntries.size(); i < cnt; i++)
+			{
+				lSize += getMemory(liEntries.get(i).image);
+			}
+		}
+		
+		while (lSize > lBudget)
+		{
+			ArrayUtil<Entry> liOldest = null;
+			Entry entryOldest = null;
+			
+			for (ArrayUtil<Entry> liEntries : whmpAvatars.values())
+			{
+				for (int i = 0, cnt = liEntries.size(); i < cnt; i++)
+				{
+					Entry entry = liEntries.get(i);
+					
+					if (entryOldest == null || entry.lLastAccess < entryOldest.lLastAccess)
+					{
+						entryOldest = entry;
+						liOldest = liEntries;
+					}
+				}
+			}
+			
+			if (entryOldest == null)
+			{
+				return;
+			}
+			
+			liOldest.remove(entryOldest);
+			
+			lSize -= getMemory(entryOldest.image);
+		}
+	}
+	
+	/**
+	 * Gets the memory of an image.
+	 * 
+	 * @param pImage the image
+	 * @return the size in bytes
+	 */
+	private static long getMemory(BufferedImage pImage)
+	{
+		return 4L * pImage.getWidth() * pImage.getHeight();
+	}
+	
+	/**
+	 * Sets the memory budget for all avatars.
+	 * 
+	 * @param pBytes the budget in bytes
+	 */
+	public static synchronized void setMemoryBudget(long pBytes)
+	{
+		lBudget = Math.max(0, pBytes);
+		
+		evict();
+	}
+	
+	/**
+	 * Gets the memory budget for all avatars.
+	 * 
+	 * @return the budget in bytes
+	 */
+	public static synchronized long getMemoryBudget()
+	{
+		return lBudget;
+	}
+	
+	/**
+	 * Gets the estimated memory of all cached avatars.
+	 * 
+	 * @return the memory in bytes
+	 */
+	public static synchronized long getMemoryUsage()
+	{
+		return lSize;
+	}
+	
+	/**
+	 * Gets the number of avatars which were found in the cache.
+	 * 
+	 * @return the number of cache hits
+	 */
+	public static synchronized long getHitCount()
+	{
+		return lHits;
+	}
+	
+	/**
+	 * Gets the number of avatars which had to be rendered.
+	 * 
+	 * @return the number of cache misses
+	 */
+	public static synchronized long getMissCount()
+	{
+		return lMisses;
+	}
+	
+	/**
+	 * Removes all cached avatars.
+	 */
+	public static synchronized void clear()
+	{
+		whmpAvatars.clear();
+		
+		lSize = 0;
+	}
+	
+    //****************************************************************
+    // Subclass definition
+    //****************************************************************
+	
+	/**
+	 * The <code>Entry</code> is a rendered avatar with its key properties.
+	 * 
+	 * @author René Jahn
+	 */
+	private static final class Entry
+	{
+		/** the rendered avatar. */
+		private BufferedImage image;
+		
+		/** the diameter. */
+		private int iDiameter;
+		
+		/** the background color. */
+		private int iRGB;
+		
+		/** the scale factor. */
+		private float fScale;
+		
+		/** the last access. */
+		private long lLastAccess;
+		
+	}	// Entry
+	
+}	// AvatarCache
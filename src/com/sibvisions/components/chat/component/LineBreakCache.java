@@ -0,0 +1,628 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.component;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.text.AttributedString;
+import java.text.BreakIterator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * The <code>LineBreakCache</code> wraps text into lines and caches the line breaks for all 
+ * chats. Repeated texts, like greetings or canned replies, will be wrapped only once per font
+ * and width. The least recently used entries will be removed if the cache exceeds the maximum
+ * number of entries or characters. Text which is longer than the maximum number of characters
+ * won't be cached.
+ * <p>
+ * Text will be measured per code point. Text which needs a layout, like combining marks or 
+ * complex scripts, will be wrapped with a {@link LineBreakMeasurer}, same as the glyph painter
+ * of a {@link TextPane}.
+ * 
+ * @author René Jahn
+ */
+public final class LineBreakCache
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the default maximum number of entries. */
+	public static final int DEFAULT_MAXIMUM_ENTRIES = 2000;
+	
+	/** the default maximum number of cached characters. */
+	public static final int DEFAULT_MAXIMUM_CHARACTERS = 1000000;
+	
+	/** the number of characters after the wrap limit, which will be measured with a layout. */
+	private static final int LAYOUT_LOOKAHEAD = 1000;
+	
+	/** the first character which may need a layout. */
+	private static final char MIN_LAYOUT_CHAR = '\u0300';
+	
+	/** the cached line breaks. */
+	private static LinkedHashMap<Key, int[]> hmpLines = new LinkedHashMap<Key, int[]>(64, 0.75f, true);
+	
+	/** the line breaker. */
+	private static BreakIterator breaker = BreakIterator.getLineInstance();
+	
+	/** the character breaker, for surrogate pairs and combining marks. */
+	private static BreakIterator breakerChar = BreakIterator.getCharacterInstance();
+	
+	/** the maximum number of entries. */
+	private static int iMaximumEntries = DEFAULT_MAXIMUM_ENTRIES;
+	
+	/** the maximum number of cached characters. */
+	private static int iMaximumCharacters = DEFAULT_MAXIMUM_CHARACTERS;
+	
+	/** the number of cached characters. */
+	private static long lCharacters;
+	
+	/** the number of cache hits. */
+	private static long lHits;
+	
+	/** the number of cache misses. */
+	private static long lMisses;
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Invisible constructor because <code>LineBreakCache</code> is a utility class.
+	 */
+	private LineBreakCache()
+	{
+		// No instance needed.
+	}
+
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	
+	/**
+	 * Gets the wrapped lines of the given text. Paragraphs are separated by line feeds. A line
+	 * breaks before the last word which doesn't fit completely, including trailing whitespace, 
+	 * same as the wrapping of a {@link TextPane}. Words which are wider than the wrap width will 
+	 * be broken at character boundaries, but never within a surrogate pair or before a combining
+	 * mark.
+	 * <p>
+	 * The result contains three values per line: the start offset, the end offset and the width 
+	 * of the line. The array is shared and must not be changed.
+	 * 
+	 * @param pText the text
+	 * @param pMetrics the font metrics
+	 * @param pWrapWidth the wrap width or <code>-1</code> for unwrapped text
+	 * @param pIndent the space before the first line
+	 * @return the lines
+	 */
+	public static synchronized int[] getLines(String pText, FontMetrics pMetrics, int pWrapWidth, int pIndent)
+	{
+		Key key = new Key(pText, pMetrics.getFont(), pMetrics.getFontRenderContext(), pWrapWidth, pIndent);
+		
+		int[] iaLines = hmpLines.get(key);
+		
+		if (iaLines != null)
+		{
+			lHits++;
+			
+			return iaLines;
+		}
+		
+		lMisses++;
+		
+		iaLines = breakLines(pText, 0, pText.length(), pMetrics, pWrapWidth, pIndent);
+		
+		//text which can't be cached would remove all other entries
+		if (pText.length() <= iMaximumCharacters && iMaximumEntries > 0)
+		{
+			hmpLines.put(key, iaLines);
+			
+			lCharacters += pText.length();
+			
+			trim();
+		}
+		
+		return iaLines;
+	}
+	
+	/**
+	 * Breaks the given text into lines, starting at the given offset, without caching. This is 
+	 * useful for text which grows, because only the changed paragraph has to be wrapped again,
+	 * and for large text, which can be wrapped in parts. 
+	 * 
+	 * @param pText the text
+	 * @param pStart the start offset of a paragraph or line
+	 * @param pLimit the offset where wrapping stops, after the line which reaches the offset
+	 * @param pMetrics the font metrics
+	 * @param pWrapWidth the wrap width or <code>-1</code> for unwrapped text
+	 * @param pIndent the space before the first line
+	 * @return the start offset, end offset and width of each line
+	 * @see #getLines(String, FontMetrics, int, int)
+	 */
+	public static synchronized int[] breakLines(String pText, int pStart, int pLimit, FontMetrics pMetrics, int pWrapWidth, int pIndent)
+	{
+		int[] iaLines = new int[12];
+		int iCount = 0;
+		
+		breaker.setText(pText);
+		breakerChar.setText(pText);
+		
+		int iStart = pStart;
+		
+		while (iStart <= pText.length() && iStart <= pLimit)
+		{
+			int iEnd = pText.indexOf('\n', iStart);
+			
+			if (iEnd < 0)
+			{
+				iEnd = pText.length();
+			}
+			
+			int iPos = iStart;
+			
+			//complex text will be measured up to the limit only, because large text is wrapped in parts
+			int iLayoutStart = iPos;
+			int iLayoutEnd = (int)Math.min(iEnd, Math.max(iPos, (long)pLimit) + LAYOUT_LOOKAHEAD);
+			
+			if (iLayoutEnd < iEnd && Character.isLowSurrogate(pText.charAt(iLayoutEnd)))
+			{
+				iLayoutEnd++;
+			}
+			
+			LineBreakMeasurer measurer = null;
+			
+			if (pWrapWidth >= 0 && requiresLayout(pText, iPos, iLayoutEnd))
+			{
+				AttributedString text = new AttributedString(pText.substring(iPos, iLayoutEnd));
+				text.addAttribute(TextAttribute.FONT, pMetrics.getFont());
+				
+				measurer = new LineBreakMeasurer(text.getIterator(), pMetrics.getFontRenderContext());
+			}
+			
+			do
+			{
+				int iMaxWidth = pWrapWidth >= 0 ? pWrapWidth : Integer.MAX_VALUE;
+				
+				if (iCount == 0)
+				{
+					iMaxWidth -= pIndent;
+				}
+				
+				int iBreak;
+				int iWidth;
+				
+				if (pWrapWidth < 0)
+				{
+					iBreak = iEnd;
+					iWidth = getWidth(pText, pMetrics, iPos, iEnd);
+				}
+				else if (measurer != null)
+				{
+					iBreak = getCharacterBreak(iPos, iLayoutStart + measurer.nextOffset(Math.max(1, iMaxWidth)));
+					
+					measurer.setPosition(iBreak - iLayoutStart);
+					
+					iWidth = getWidth(pText, pMetrics, iPos, iBreak);
+				}
+				else
+				{
+					//the first code point which doesn't fit
+					int iFit = iPos;
+					
+					iWidth = 0;
+					
+					while (iFit < iEnd)
+					{
+						int iCodePoint = pText.codePointAt(iFit);
+						int iCharWidth = pMetrics.charWidth(iCodePoint);
+						
+						if (iWidth + iCharWidth > iMaxWidth)
+						{
+							break;
+						}
+						
+						iWidth += iCharWidth;
+						iFit += Character.charCount(iCodePoint);
+					}
+					
+					iBreak = iEnd;
+					
+					if (iFit < iEnd)
+					{
+						iBreak = breaker.preceding(iFit + 1);
+						
+						if (iBreak <= iPos)
+						{
+							iBreak = getCharacterBreak(iPos, iFit);
+						}
+						
+						iWidth = getWidth(pText, pMetrics, iPos, iBreak);
+					}
+				}
+				
+				if (iaLines.length < (iCount + 1) * 3)
+				{
+					int[] iaNew = new int[iaLines.length * 2];
+					
+					System.arraycopy(iaLines, 0, iaNew, 0, iaLines.length);
+					
+					iaLines = iaNew;
+				}
+				
+				iaLines[iCount * 3] = iPos;
+				iaLines[iCount * 3 + 1] = iBreak;
+				iaLines[iCount * 3 + 2] = iWidth;
+				
+				iCount++;
+				
+				iPos = iBreak;
+			}
+			while (iPos < iEnd && iPos < pLimit);
+			
+			if (iPos < iEnd)
+			{
+				//limit reached within the paragraph
+				break;
+			}
+			
+			iStart = iEnd + 1;
+		}
+		
+		int[] iaResult = new int[iCount * 3];
+		
+		System.arraycopy(iaLines, 0, iaResult, 0, iaResult.length);
+		
+		return iaResult;
+	}
+	
+	/**
+	 * Gets the character boundary for breaking a line at the given offset. Surrogate pairs and
+	 * combining marks won't be separated and the line contains at least one character.
+	 * 
+	 * @param pLineStart the start offset of the line
+	 * @param pOffset the offset where the line should break
+	 * @return the break offset
+	 */
+	private static int getCharacterBreak(int pLineStart, int pOffset)
+	{
+		if (pOffset > pLineStart && breakerChar.isBoundary(pOffset))
+		{
+			return pOffset;
+		}
+		
+		int iBreak = breakerChar.preceding(pOffset);
+		
+		if (iBreak > pLineStart)
+		{
+			return iBreak;
+		}
+		
+		return breakerChar.following(pLineStart);
+	}
+	
+	/**
+	 * Gets the width of a part of the text. Text which needs a layout will be measured with 
+	 * the layout.
+	 * 
+	 * @param pText the text
+	 * @param pMetrics the font metrics
+	 * @param pStart the start offset
+	 * @param pEnd the end offset
+	 * @return the width
+	 */
+	public static int getWidth(String pText, FontMetrics pMetrics, int pStart, int pEnd)
+	{
+		if (requiresLayout(pText, pStart, pEnd))
+		{
+			return pMetrics.stringWidth(pText.substring(pStart, pEnd));
+		}
+		
+		int iWidth = 0;
+		
+		for (int i = pStart; i < pEnd; )
+		{
+			int iCodePoint = pText.codePointAt(i);
+			
+			iWidth += pMetrics.charWidth(iCodePoint);
+			
+			i += Character.charCount(iCodePoint);
+		}
+		
+		return iWidth;
+	}
+	
+	/**
+	 * Gets whether a part of the text needs a layout, e.g. because of combining marks or 
+	 * complex scripts.
+	 * 
+	 * @param pText the text
+	 * @param pStart the start offset
+	 * @param pEnd the end offset
+	 * @return <code>true</code> if the text can't be measured per code point
+	 */
+	private static boolean requiresLayout(String pText, int pStart, int pEnd)
+	{
+		for (int i = pStart; i < pEnd; i++)
+		{
+			if (pText.charAt(i) >= MIN_LAYOUT_CHAR)
+			{
+				//the font checks the ranges
+				return Font.textRequiresLayout(pText.substring(pStart, pEnd).toCharArray(), 0, pEnd - pStart);
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Gets the position where a line can be broken before the given offset.
+	 * 
+	 * @param pText the text
+	 * @param pOffset the offset
+	 * @return the break position or <code>0</code> if there's no break position
+	 */
+	public static synchronized int getBreakBefore(String pText, int pOffset)
+	{
+		breaker.setText(pText);
+		
+		int iBreak = breaker.preceding(pOffset);
+		
+		return iBreak != BreakIterator.DONE ? iBreak : 0;
+	}
+	
+	/**
+	 * Removes the least recently used entries until the cache fits into the limits.
+	 */
+	private static void trim()
+	{
+		Iterator<Key> it = hmpLines.keySet().iterator();
+		
+		while (it.hasNext() 
+			   && (hmpLines.size() > iMaximumEntries || lCharacters > iMaximumCharacters))
+		{
+			Key key = it.next();
+			
+			lCharacters -= key.sText.length();
+			
+			it.remove();
+		}
+	}
+	
+	/**
+	 * Sets the maximum number of cached entries.
+	 * 
+	 * @param pEntries the number of entries
+	 */
+	public static synchronized void setMaximumEntries(int pEntries)
+	{
+		iMaximumEntries = Math.max(0, pEntries);
+		
+		trim();
+	}
+	
+	/**
+	 * Gets the maximum number of cached entries.
+	 * 
+	 * @return the number of entries
+	 */
+	public static synchronized int getMaximumEntries()
+	{
+		return iMaximumEntries;
+	}
+	
+	/**
+	 * Sets the maximum number of cached characters, for all texts.
+	 * 
+	 * @param pCharacters the number of characters
+	 */
+	public static synchronized void setMaximumCharacters(int pCharacters)
+	{
+		iMaximumCharacters = Math.max(0, pCharacters);
+		
+		trim();
+	}
+	
+	/**
+	 * Gets the maximum number of cached characters.
+	 * 
+	 * @return the number of characters
+	 */
+	public static synchronized int getMaximumCharacters()
+	{
+		return iMaximumCharacters;
+	}
+	
+	/**
+	 * Gets the number of cached entries.
+	 * 
+	 * @return the number of entries
+	 */
+	public static synchronized int getSize()
+	{
+		return hmpLines.size();
+	}
+	
+	/**
+	 * Gets the number of cached characters.
+	 * 
+	 * @return the number of characters
+	 */
+	public static synchronized long getCharacterCount()
+	{
+		return lCharacters;
+	}
+	
+	/**
+	 * Removes all cached entries.
+	 */
+	public static synchronized void clear()
+	{
+		hmpLines.clear();
+		
+		lCharacters = 0;
+	}
+	
+	/**
+	 * Gets the number of requests which were answered from the cache, since the last 
+	 * {@link #resetStatistics()}.
+	 * 
+	 * @return the number of cache hits
+	 */
+	public static synchronized long getHitCount()
+	{
+		return lHits;
+	}
+	
+	/**
+	 * Gets the number of requests which needed a line break, since the last 
+	 * {@link #resetStatistics()}.
+	 * 
+	 * @return the number of cache misses
+	 */
+	public static synchronized long getMissCount()
+	{
+		return lMisses;
+	}
+	
+	/**
+	 * Gets the ratio of requests which were answered from the cache.
+	 * 
+	 * @return the ratio between <code>0</code> and <code>1</code>
+	 */
+	public static synchronized double getHitRatio()
+	{
+		long lTotal = lHits + lMisses;
+		
+		if (lTotal == 0)
+		{
+			return 0;
+		}
+		
+		return (double)lHits / lTotal;
+	}
+	
+	/**
+	 * Resets the cache statistics.
+	 */
+	public static synchronized void resetStatistics()
+	{
+		lHits = 0;
+		lMisses = 0;
+	}
+	
+    //****************************************************************
+    // Subclass definition
+    //****************************************************************
+	
+	/**
+	 * The <code>Key</code> identifies cached line breaks.
+	 * 
+	 * @author René Jahn
+	 */
+	private static final class Key
+	{
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Class members
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/** the text. */
+		private final String sText;
+		
+		/** the font. */
+		private final Font font;
+		
+		/** the render context. */
+		private final FontRenderContext frc;
+		
+		/** the wrap width. */
+		private final int iWrapWidth;
+		
+		/** the indent of the first line. */
+		private final int iIndent;
+		
+		/** the hash code. */
+		private final int iHashCode;
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Initialization
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/**
+		 * Creates a new instance of <code>Key</code>.
+		 * 
+		 * @param pText the text
+		 * @param pFont the font
+		 * @param pContext the render context
+		 * @param pWrapWidth the wrap width
+		 * @param pIndent the indent of the first line
+		 */
+		Key(String pText, Font pFont, FontRenderContext pContext, int pWrapWidth, int pIndent)
+		{
+			sText = pText;
+			font = pFont;
+			frc = pContext;
+			iWrapWidth = pWrapWidth;
+			iIndent = pIndent;
+			
+			int iHash = pText.hashCode();
+			iHash = 31 * iHash + pFont.hashCode();
+			iHash = 31 * iHash + pContext.hashCode();
+			iHash = 31 * iHash + pWrapWidth;
+			iHash = 31 * iHash + pIndent;
+			
+			iHashCode = iHash;
+		}
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Overwritten methods
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		@Override
+		public int hashCode()
+		{
+			return iHashCode;
+		}
+		
+		@Override
+		public boolean equals(Object pObject)
+		{
+			if (this == pObject)
+			{
+				return true;
+			}
+			
+			if (!(pObject instanceof Key))
+			{
+				return false;
+			}
+			
+			Key key = (Key)pObject;
+			
+			return iHashCode == key.iHashCode
+				   && iWrapWidth == key.iWrapWidth
+				   && iIndent == key.iIndent
+				   && sText.equals(key.sText)
+				   && font.equals(key.font)
+				   && frc.equals(key.frc);
+		}
+		
+	}	// Key
+	
+}	// LineBreakCache
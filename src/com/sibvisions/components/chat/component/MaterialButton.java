@@ -24,9 +24,9 @@ import java.awt.Point;
 import java.awt.RenderingHints;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.geom.Area;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
 
 import javax.swing.JButton;
 import javax.swing.SwingUtilities;
@@ -36,6 +36,8 @@ import org.jdesktop.animation.timing.Animator;
 import org.jdesktop.animation.timing.TimingTarget;
 import org.jdesktop.animation.timing.TimingTargetAdapter;
 
+import com.sibvisions.components.chat.animation.FrameClock;
+
 /**
  * The <code>MaterialButton</code> is a button with pressed effect like a material design button.
  * 
@@ -47,8 +49,37 @@ public class MaterialButton extends JButton
     // Class members
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 
+	/** the number of alpha steps for the pressed animation. */
+	private static final int ALPHA_STEPS = 100;
+	
+	/** the composites for all alpha steps. */
+	private static final AlphaComposite[] ALPHA_COMPOSITES = new AlphaComposite[ALPHA_STEPS + 1];
+	
+	static
+	{
+		for (int i = 0; i <= ALPHA_STEPS; i++)
+		{
+			ALPHA_COMPOSITES[i] = AlphaComposite.getInstance(AlphaComposite.SRC_ATOP, i / (float)ALPHA_STEPS);
+		}
+	}
+	
 	/** the animator. */
     private Animator animator;
+    
+    /** the button shape, for the mask. */
+    private RoundRectangle2D.Double shpButton = new RoundRectangle2D.Double();
+    
+    /** the ripple shape. */
+    private Ellipse2D.Double shpRipple = new Ellipse2D.Double();
+    
+    /** the antialiased button shape as alpha mask. */
+    private BufferedImage imgMask;
+    
+    /** the ripple, clipped by the mask. */
+    private BufferedImage imgRipple;
+    
+    /** the graphics of the ripple image. */
+    private Graphics2D g2Ripple;
 
     /** the point where lieft mouse was pressed. */
     private Point ptPressed;
@@ -68,6 +99,9 @@ public class MaterialButton extends JButton
     /** alpha composite value. */
     private float alpha;
     
+    /** the arc of the mask. */
+    private int iMaskArc;
+    
     /** whether to paint the background. */
     private boolean bBackgroundPainted;
 
@@ -134,6 +168,8 @@ public class MaterialButton extends JButton
         
         animator = new Animator(400, target);
         animator.setResolution(0);
+        
+        FrameClock.attach(animator, this);
     }
 
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
@@ -156,7 +192,7 @@ public class MaterialButton extends JButton
         
         try
         {
-	        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+	        RenderQuality.applyHints(g2, this);
 	        
 	        if (bBackgroundPainted) 
 	        {
@@ -164,15 +200,9 @@ public class MaterialButton extends JButton
 	            g2.fillRoundRect(0, 0, width, height, arc, arc);
 	        }
 	        
-	        if (ptPressed != null) 
+	        if (ptPressed != null && width > 0 && height > 0) 
 	        {
-	            g2.setColor(colPressed);
-	            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_ATOP, alpha));
-	            
-	            Area area = new Area(new RoundRectangle2D.Double(0, 0, width, height, arc, arc));
-	            
-	            area.intersect(new Area(new Ellipse2D.Double((ptPressed.x - animatSize / 2), (ptPressed.y - animatSize / 2), animatSize, animatSize)));
-	            g2.fill(area);
+	        	paintRipple(g2, width, height);
 	        }
         }
         finally
@@ -183,10 +213,103 @@ public class MaterialButton extends JButton
         super.paintComponent(pGraphics);
     }
     
+    @Override
+    public void removeNotify()
+    {
+    	super.removeNotify();
+    	
+    	releaseRipple();
+    }
+    
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     // User-defined methods
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     
+    /**
+     * Paints the ripple of the pressed animation. The ripple will be clipped with an antialiased
+     * mask of the button shape. The mask, the ripple image and all shapes are re-used for every 
+     * frame.
+     * 
+     * @param pGraphics the graphics
+     * @param pWidth the width
+     * @param pHeight the height
+     */
+    private void paintRipple(Graphics2D pGraphics, int pWidth, int pHeight)
+    {
+    	//render with the device scale, in quarter steps
+    	int iScale = Math.max(4, (int)Math.ceil(pGraphics.getTransform().getScaleX() * 4));
+    	
+    	int iImageWidth = pWidth * iScale / 4;
+    	int iImageHeight = pHeight * iScale / 4;
+    	
+    	if (imgMask == null 
+    		|| imgMask.getWidth() != iImageWidth 
+    		|| imgMask.getHeight() != iImageHeight 
+    		|| iMaskArc != arc)
+    	{
+    		releaseRipple();
+    		
+    		shpButton.setRoundRect(0, 0, pWidth, pHeight, arc, arc);
+    		
+    		imgMask = new BufferedImage(iImageWidth, iImageHeight, BufferedImage.TYPE_INT_ARGB);
+    		
+    		Graphics2D g2Mask = imgMask.createGraphics();
+    		
+    		try
+    		{
+    			g2Mask.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    			g2Mask.scale(iScale / 4d, iScale / 4d);
+    			g2Mask.setColor(Color.WHITE);
+    			g2Mask.fill(shpButton);
+    		}
+    		finally
+    		{
+    			g2Mask.dispose();
+    		}
+    		
+    		iMaskArc = arc;
+    		
+    		imgRipple = new BufferedImage(iImageWidth, iImageHeight, BufferedImage.TYPE_INT_ARGB);
+    		
+    		g2Ripple = imgRipple.createGraphics();
+    		g2Ripple.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    		g2Ripple.scale(iScale / 4d, iScale / 4d);
+    	}
+    	
+    	shpRipple.setFrame(ptPressed.x - animatSize / 2, ptPressed.y - animatSize / 2, animatSize, animatSize);
+    	
+    	g2Ripple.setComposite(AlphaComposite.Clear);
+    	g2Ripple.fillRect(0, 0, pWidth, pHeight);
+    	
+    	g2Ripple.setComposite(AlphaComposite.SrcOver);
+    	g2Ripple.setColor(colPressed);
+    	g2Ripple.fill(shpRipple);
+    	
+    	//keep the ripple only inside the button shape
+    	g2Ripple.setComposite(AlphaComposite.DstIn);
+    	g2Ripple.drawImage(imgMask, 0, 0, pWidth, pHeight, null);
+    	
+    	int iAlpha = Math.max(0, Math.min(ALPHA_STEPS, Math.round(alpha * ALPHA_STEPS)));
+    	
+    	pGraphics.setComposite(ALPHA_COMPOSITES[iAlpha]);
+    	pGraphics.drawImage(imgRipple, 0, 0, pWidth, pHeight, null);
+    }
+    
+    /**
+     * Releases the images of the pressed animation.
+     */
+    private void releaseRipple()
+    {
+    	if (g2Ripple != null)
+    	{
+    		g2Ripple.dispose();
+    		g2Ripple = null;
+    	}
+    	
+    	imgMask = null;
+    	imgRipple = null;
+    }
+    
     /**
      * Sets whether the background should be painted.
      * 
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.component;
+
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+import javax.swing.JComponent;
+
+/**
+ * The <code>RenderQuality</code> decides the rendering hints for painting. A component tree can
+ * be switched to fast rendering, e.g. while scrolling or resizing, and all components inside 
+ * will paint without antialiasing until the tree is switched back to quality rendering.
+ * 
+ * @author René Jahn
+ */
+public final class RenderQuality
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the client property for fast rendering. */
+	private static final String PROPERTY_FAST = RenderQuality.class.getName() + ".fast";
+	
+	/** the hints for quality rendering. */
+	private static final RenderingHints HINTS_QUALITY = new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+	
+	/** the hints for fast rendering. */
+	private static final RenderingHints HINTS_SPEED = new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+	
+	static
+	{
+		HINTS_QUALITY.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		
+		HINTS_SPEED.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+		HINTS_SPEED.put(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Invisible constructor because <code>RenderQuality</code> is a utility class.
+	 */
+	private RenderQuality()
+	{
+		// No instance needed.
+	}
+
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	
+	/**
+	 * Sets whether the given component and all its children should be painted fast.
+	 * 
+	 * @param pComponent the root component
+	 * @param pFast <code>true</code> for fast rendering, <code>false</code> for quality rendering
+	 */
+	public static void setFastRendering(JComponent pComponent, boolean pFast)
+	{
+		pComponent.putClientProperty(PROPERTY_FAST, pFast ? Boolean.TRUE : null);
+	}
+	
+	/**
+	 * Gets whether the given component should be painted fast. This is the case if the component
+	 * or one of its parents was switched to fast rendering.
+	 * 
+	 * @param pComponent the component
+	 * @return <code>true</code> for fast rendering, <code>false</code> for quality rendering
+	 */
+	public static boolean isFastRendering(Component pComponent)
+	{
+		for (Component comp = pComponent; comp != null; comp = comp.getParent())
+		{
+			if (comp instanceof JComponent 
+				&& ((JComponent)comp).getClientProperty(PROPERTY_FAST) != null)
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Sets the rendering hints for painting the given component.
+	 * 
+	 * @param pGraphics the graphics
+	 * @param pComponent the painted component
+	 */
+	public static void applyHints(Graphics2D pGraphics, Component pComponent)
+	{
+		if (isFastRendering(pComponent))
+		{
+			pGraphics.addRenderingHints(HINTS_SPEED);
+		}
+		else
+		{
+			pGraphics.addRenderingHints(HINTS_QUALITY);
+		}
+	}
+	
+}	// RenderQuality
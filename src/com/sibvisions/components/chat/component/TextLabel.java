@@ -0,0 +1,1104 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.component;
+
+import java.awt.Color;
+import java.awt.Cursor;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Map;
+
+import javax.swing.BorderFactory;
+import javax.swing.Icon;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.UIManager;
+import javax.swing.plaf.UIResource;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultCaret;
+
+import com.sibvisions.components.chat.animation.FrameClock;
+
+/**
+ * The <code>TextLabel</code> shows read-only text, wrapped like a read-only {@link TextPane}, 
+ * but without a document and views. The line breaks are shared by the {@link LineBreakCache}. 
+ * If selection is enabled, a {@link TextPane} will be shown as long as the user interacts 
+ * with the text.
+ * 
+ * @author René Jahn
+ */
+public class TextLabel extends JComponent
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the width of the caret, reserved like text components do. */
+	private static final int CARET_WIDTH = 1;
+	
+	/** the number of characters which will be wrapped at once, if the number of lines is limited. */
+	private static final int LIMITED_CHUNK_SIZE = 1000;
+	
+	/** the text. */
+	private String sText = "";
+	
+	/** the icon. */
+	private Icon icon;
+	
+	/** whether the icon is shown before the text. */
+	private boolean bIconLeading;
+	
+	/** whether the text can be selected. */
+	private boolean bSelectionEnabled;
+	
+	/** the editor for selection. */
+	private TextPane tpEditor;
+	
+	/** the start offset, end offset and width of the wrapped lines. */
+	private int[] iaLines;
+	
+	/** the number of wrapped lines. */
+	private int iLineCount;
+	
+	/** the font of the cached lines. */
+	private Font fntLines;
+	
+	/** the wrap width of the cached lines, <code>-1</code> if not wrapped. */
+	private int iLinesWidth;
+	
+	/** the line with the icon. */
+	private int iIconLine;
+	
+	/** the x position of the icon. */
+	private int iIconX;
+	
+	/** the font of the cached natural width. */
+	private Font fntNatural;
+	
+	/** the cached width of all paragraphs except the last one, without wrapping. */
+	private int iNaturalWidth;
+	
+	/** the cached width of the last paragraph, without wrapping and without a trailing icon. */
+	private int iNaturalLastWidth;
+	
+	/** the maximum number of shown lines. */
+	private int iMaximumLines;
+	
+	/** the number of characters which will be wrapped per frame. */
+	private int iLayoutChunkSize;
+	
+	/** the offset where wrapping continues, <code>-1</code> if all lines are wrapped. */
+	private int iLayoutNext = -1;
+	
+	/** the timer for wrapping large text. */
+	private Timer tiLayout;
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Creates a new instance of <code>TextLabel</code>.
+	 */
+	public TextLabel()
+	{
+		setOpaque(false);
+		setForeground(new Color(255, 255, 255));
+		setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+		
+		updateUI();
+		
+		MouseAdapter maEditor = new MouseAdapter()
+		{
+			@Override
+			public void mousePressed(MouseEvent pEvent)
+			{
+				if (isSelectable() 
+					&& tpEditor == null 
+					&& SwingUtilities.isLeftMouseButton(pEvent))
+				{
+					startSelection();
+				}
+				
+				forward(pEvent);
+			}
+			
+			@Override
+			public void mouseReleased(MouseEvent pEvent)
+			{
+				forward(pEvent);
+			}
+			
+			@Override
+			public void mouseClicked(MouseEvent pEvent)
+			{
+				forward(pEvent);
+			}
+			
+			@Override
+			public void mouseDragged(MouseEvent pEvent)
+			{
+				forward(pEvent);
+			}
+		};
+		
+		addMouseListener(maEditor);
+		addMouseMotionListener(maEditor);
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Overwritten methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	@Override
+	public void updateUI()
+	{
+		super.updateUI();
+		
+		Font font = getFont();
+		
+		if (font == null || font instanceof UIResource)
+		{
+			setFont(UIManager.getFont("TextPane.font"));
+		}
+	}
+	
+	@Override
+	public void setFont(Font pFont)
+	{
+		super.setFont(pFont);
+		
+		if (tpEditor != null)
+		{
+			tpEditor.setFont(pFont);
+		}
+	}
+	
+	@Override
+	public void setForeground(Color pColor)
+	{
+		super.setForeground(pColor);
+		
+		if (tpEditor != null)
+		{
+			tpEditor.setForeground(pColor);
+		}
+	}
+	
+	@Override
+	public void removeNotify()
+	{
+		super.removeNotify();
+		
+		if (isLargeText())
+		{
+			//the lines will be wrapped again when shown
+			releaseLines();
+		}
+	}
+	
+	@Override
+	public Dimension getPreferredSize()
+	{
+		if (isPreferredSizeSet())
+		{
+			return super.getPreferredSize();
+		}
+		
+		Insets ins = getInsets();
+		
+		int iHorizontal = ins.left + ins.right + CARET_WIDTH;
+		int iVertical = ins.top + ins.bottom;
+		
+		//same as text components: the height is wrapped to the current width
+		int iWrapWidth = -1;
+		
+		if (getWidth() > iHorizontal && getHeight() > iVertical)
+		{
+			iWrapWidth = getWidth() - iHorizontal;
+		}
+		
+		return new Dimension(getNaturalWidth() + iHorizontal, getTextHeight(iWrapWidth) + iVertical);
+	}
+	
+	@Override
+	public void doLayout()
+	{
+		if (tpEditor != null)
+		{
+			tpEditor.setBounds(0, 0, getWidth(), getHeight());
+		}
+	}
+	
+	@Override
+	protected void paintComponent(Graphics pGraphics)
+	{
+		if (tpEditor != null)
+		{
+			//the editor paints the text
+			return;
+		}
+		
+		layoutLines(getWrapWidth());
+		
+		Graphics2D g2 = (Graphics2D)pGraphics.create();
+		
+		try
+		{
+			//same text antialiasing as text components
+			Map<?, ?> mpHints = (Map<?, ?>)Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+			
+			if (mpHints != null)
+			{
+				g2.addRenderingHints(mpHints);
+			}
+			
+			g2.setColor(getForeground());
+			g2.setFont(fntLines);
+			
+			FontMetrics fm = getFontMetrics(fntLines);
+			
+			Insets ins = getInsets();
+			
+			Rectangle rectClip = g2.getClipBounds();
+			
+			int iClipTop = rectClip != null ? rectClip.y : 0;
+			int iClipBottom = rectClip != null ? rectClip.y + rectClip.height : getHeight();
+			
+			int y = ins.top;
+			
+			for (int i = 0; i < iLineCount && y < iClipBottom; i++)
+			{
+				int iAscent = getLineAscent(fm, i);
+				int iLineHeight = iAscent + fm.getHeight() - fm.getAscent();
+				
+				if (y + iLineHeight > iClipTop)
+				{
+					int x = ins.left;
+					
+					if (i == iIconLine)
+					{
+						icon.paintIcon(this, g2, x + iIconX, y + iAscent - icon.getIconHeight());
+						
+						if (bIconLeading)
+						{
+							x += icon.getIconWidth();
+						}
+					}
+					
+					int iStart = iaLines[i * 3];
+					int iEnd = iaLines[i * 3 + 1];
+					
+					if (iEnd > iStart)
+					{
+						g2.drawString(sText.substring(iStart, iEnd), x, y + iAscent);
+					}
+				}
+				
+				y += iLineHeight;
+			}
+		}
+		finally
+		{
+			g2.dispose();
+		}
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Sets the text.
+	 * 
+	 * @param pText the text
+	 */
+	public void setText(String pText)
+	{
+		String sNewText = pText != null ? pText : "";
+		
+		if (!sNewText.equals(sText))
+		{
+			sText = sNewText;
+			
+			textChanged();
+		}
+	}
+	
+	/**
+	 * Appends text. Only the last paragraph will be wrapped again, the lines of all other 
+	 * paragraphs will be kept.
+	 * 
+	 * @param pText the text to append
+	 */
+	public void appendText(String pText)
+	{
+		if (pText == null || pText.length() == 0)
+		{
+			return;
+		}
+		
+		//start of the paragraph which grows
+		int iParagraph = sText.lastIndexOf('\n') + 1;
+		
+		sText = sText + pText;
+		
+		if (tpEditor != null)
+		{
+			//keep the selection
+			try
+			{
+				tpEditor.getDocument().insertString(tpEditor.getDocument().getLength(), pText, null);
+			}
+			catch (BadLocationException ble)
+			{
+				tpEditor.setText(sText);
+			}
+		}
+		
+		Font font = getFont();
+		
+		if (font.equals(fntNatural))
+		{
+			//only the last paragraph grows, a trailing icon moves with it
+			measureParagraphs(getFontMetrics(font), iParagraph);
+		}
+		
+		if (iMaximumLines > 0)
+		{
+			//the visible lines may change completely
+			releaseLines();
+		}
+		else if (font.equals(fntLines) && iLayoutNext < 0)
+		{
+			FontMetrics fm = getFontMetrics(font);
+			
+			//keep the lines of all other paragraphs
+			int iKeep = iLineCount;
+			
+			while (iKeep > 0 && iaLines[(iKeep - 1) * 3] >= iParagraph)
+			{
+				iKeep--;
+			}
+			
+			int iIndent = iParagraph == 0 && icon != null && bIconLeading ? icon.getIconWidth() : 0;
+			
+			int[] iaAppended = LineBreakCache.breakLines(sText, iParagraph, sText.length(), fm, iLinesWidth, iIndent);
+			
+			int[] iaNew = new int[iKeep * 3 + iaAppended.length];
+			
+			System.arraycopy(iaLines, 0, iaNew, 0, iKeep * 3);
+			System.arraycopy(iaAppended, 0, iaNew, iKeep * 3, iaAppended.length);
+			
+			iaLines = iaNew;
+			iLineCount = iaNew.length / 3;
+			
+			placeIcon(fm, iLinesWidth);
+		}
+		
+		revalidate();
+		repaint();
+	}
+	
+	/**
+	 * Gets the text.
+	 * 
+	 * @return the text
+	 */
+	public String getText()
+	{
+		return sText;
+	}
+	
+	/**
+	 * Sets the icon which is shown inline with the text.
+	 * 
+	 * @param pIcon the icon or <code>null</code> to show text only
+	 * @param pLeading <code>true</code> to show the icon before the text, <code>false</code> to 
+	 *                 show the icon after the text
+	 */
+	public void setIcon(Icon pIcon, boolean pLeading)
+	{
+		if (icon != pIcon || bIconLeading != pLeading)
+		{
+			icon = pIcon;
+			bIconLeading = pLeading;
+			
+			textChanged();
+		}
+	}
+	
+	/**
+	 * Gets the icon.
+	 * 
+	 * @return the icon or <code>null</code> if not set
+	 */
+	public Icon getIcon()
+	{
+		return icon;
+	}
+	
+	/**
+	 * Gets the text lines, wrapped to the current width.
+	 * 
+	 * @return the lines
+	 */
+	public String[] getLines()
+	{
+		layoutLines(getWrapWidth());
+		
+		String[] sLines = new String[iLineCount];
+		
+		for (int i = 0; i < iLineCount; i++)
+		{
+			sLines[i] = sText.substring(iaLines[i * 3], iaLines[i * 3 + 1]);
+		}
+		
+		return sLines;
+	}
+	
+	/**
+	 * Sets whether the text can be selected and copied. An editor will be shown when the user 
+	 * presses the mouse and it will be removed when it loses the focus. Large text, which is 
+	 * wrapped in parts, can't be selected, because the editor would need a document with the
+	 * whole text.
+	 * 
+	 * @param pEnabled <code>true</code> to enable selection
+	 * @see #setLayoutChunkSize(int)
+	 */
+	public void setSelectionEnabled(boolean pEnabled)
+	{
+		bSelectionEnabled = pEnabled;
+		
+		if (!pEnabled)
+		{
+			stopSelection();
+		}
+		
+		updateCursor();
+	}
+	
+	/**
+	 * Gets whether the text can be selected and copied.
+	 * 
+	 * @return <code>true</code> if selection is enabled
+	 */
+	public boolean isSelectionEnabled()
+	{
+		return bSelectionEnabled;
+	}
+	
+	/**
+	 * Gets whether the editor for selection is currently shown.
+	 * 
+	 * @return <code>true</code> if the text is shown in an editor
+	 */
+	public boolean isSelecting()
+	{
+		return tpEditor != null;
+	}
+	
+	/**
+	 * Sets the maximum number of shown lines. Wrapping stops after the last shown line.
+	 * 
+	 * @param pLines the number of lines or <code>0</code> to show all lines
+	 */
+	public void setMaximumLines(int pLines)
+	{
+		int iLines = Math.max(0, pLines);
+		
+		if (iMaximumLines != iLines)
+		{
+			iMaximumLines = iLines;
+			
+			textChanged();
+		}
+	}
+	
+	/**
+	 * Gets the maximum number of shown lines.
+	 * 
+	 * @return the number of lines or <code>0</code> if all lines are shown
+	 */
+	public int getMaximumLines()
+	{
+		return iMaximumLines;
+	}
+	
+	/**
+	 * Sets the number of characters which will be wrapped per frame. Text which is longer than 
+	 * the given size will be wrapped in parts, without blocking the UI. The lines of such text
+	 * are released, if the label is removed from its parent, and the line count grows while the
+	 * text is wrapped. The line count is a bound property.
+	 * 
+	 * @param pSize the number of characters or <code>0</code> to wrap the whole text at once
+	 */
+	public void setLayoutChunkSize(int pSize)
+	{
+		int iSize = Math.max(0, pSize);
+		
+		if (iLayoutChunkSize != iSize)
+		{
+			iLayoutChunkSize = iSize;
+			
+			textChanged();
+		}
+	}
+	
+	/**
+	 * Gets the number of characters which will be wrapped per frame.
+	 * 
+	 * @return the number of characters or <code>0</code> if the whole text is wrapped at once
+	 */
+	public int getLayoutChunkSize()
+	{
+		return iLayoutChunkSize;
+	}
+	
+	/**
+	 * Gets the number of wrapped lines for the current width.
+	 * 
+	 * @return the number of lines
+	 */
+	public int getLineCount()
+	{
+		layoutLines(getWrapWidth());
+		
+		return iLineCount;
+	}
+	
+	/**
+	 * Gets whether all lines are wrapped.
+	 * 
+	 * @return <code>true</code> if all lines are wrapped, <code>false</code> if wrapping is 
+	 *         still in progress
+	 */
+	public boolean isLayoutComplete()
+	{
+		return iLayoutNext < 0;
+	}
+	
+	/**
+	 * Removes the editor for selection, if shown.
+	 */
+	public void stopSelection()
+	{
+		if (tpEditor != null)
+		{
+			remove(tpEditor);
+			
+			tpEditor = null;
+			
+			repaint();
+		}
+	}
+	
+	/**
+	 * Gets whether the editor for selection can be shown.
+	 * 
+	 * @return <code>true</code> if selection is enabled and the text is not large
+	 */
+	private boolean isSelectable()
+	{
+		return bSelectionEnabled && !isLargeText();
+	}
+	
+	/**
+	 * Shows the text cursor, if the text can be selected.
+	 */
+	private void updateCursor()
+	{
+		setCursor(isSelectable() ? Cursor.getPredefinedCursor(Cursor.TEXT_CURSOR) : null);
+	}
+	
+	/**
+	 * Shows the text in an editor which supports selection and copy.
+	 */
+	private void startSelection()
+	{
+		tpEditor = new TextPane(true);
+		tpEditor.setFont(getFont());
+		tpEditor.setForeground(getForeground());
+		tpEditor.setBorder(getBorder());
+		tpEditor.setText(sText);
+		
+		//the editor must not scroll the message list
+		((DefaultCaret)tpEditor.getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+		
+		tpEditor.addFocusListener(new FocusAdapter()
+		{
+			@Override
+			public void focusLost(FocusEvent pEvent)
+			{
+				if (!pEvent.isTemporary())
+				{
+					stopSelection();
+				}
+			}
+		});
+		
+		add(tpEditor);
+		
+		doLayout();
+		
+		repaint();
+	}
+	
+	/**
+	 * Forwards a mouse event to the editor. The label receives all events until the mouse
+	 * is released, because it was the target of the mouse press.
+	 * 
+	 * @param pEvent the mouse event
+	 */
+	private void forward(MouseEvent pEvent)
+	{
+		if (tpEditor != null)
+		{
+			tpEditor.dispatchEvent(SwingUtilities.convertMouseEvent(this, pEvent, tpEditor));
+		}
+	}
+	
+	/**
+	 * Invalidates the cached lines after a text or icon change.
+	 */
+	private void textChanged()
+	{
+		stopSelection();
+		
+		releaseLines();
+		
+		fntNatural = null;
+		
+		updateCursor();
+		
+		revalidate();
+		repaint();
+	}
+	
+	/**
+	 * Releases the wrapped lines and stops wrapping.
+	 */
+	private void releaseLines()
+	{
+		iaLines = null;
+		iLineCount = 0;
+		fntLines = null;
+		iLayoutNext = -1;
+		
+		if (tiLayout != null)
+		{
+			tiLayout.stop();
+		}
+	}
+	
+	/**
+	 * Gets whether the text will be wrapped in parts.
+	 * 
+	 * @return <code>true</code> if the text is longer than the chunk size
+	 */
+	private boolean isLargeText()
+	{
+		return iLayoutChunkSize > 0 && sText.length() > iLayoutChunkSize;
+	}
+	
+	/**
+	 * Gets the wrap width for the current size.
+	 * 
+	 * @return the wrap width or <code>-1</code> if the label has no size
+	 */
+	private int getWrapWidth()
+	{
+		Insets ins = getInsets();
+		
+		int iWrapWidth = getWidth() - ins.left - ins.right - CARET_WIDTH;
+		
+		return iWrapWidth > 0 ? iWrapWidth : -1;
+	}
+	
+	/**
+	 * Gets the ascent of a line. The line with the icon may be higher than others.
+	 * 
+	 * @param pMetrics the font metrics
+	 * @param pLine the line index
+	 * @return the ascent
+	 */
+	private int getLineAscent(FontMetrics pMetrics, int pLine)
+	{
+		if (pLine == iIconLine)
+		{
+			return Math.max(pMetrics.getAscent(), icon.getIconHeight());
+		}
+		
+		return pMetrics.getAscent();
+	}
+	
+	/**
+	 * Gets the width of the text without wrapping, including the icon.
+	 * 
+	 * @return the width
+	 */
+	private int getNaturalWidth()
+	{
+		Font font = getFont();
+		
+		if (!font.equals(fntNatural))
+		{
+			iNaturalWidth = 0;
+			
+			if (isLargeText() || iMaximumLines > 0)
+			{
+				//not cached, because the text would replace most other cache entries
+				measureParagraphs(getFontMetrics(font), 0);
+			}
+			else
+			{
+				int iIconWidth = bIconLeading && icon != null ? icon.getIconWidth() : 0;
+				
+				int[] iaUnwrapped = LineBreakCache.getLines(sText, getFontMetrics(font), -1, iIconWidth);
+				
+				for (int i = 0, cnt = iaUnwrapped.length / 3; i < cnt; i++)
+				{
+					int iWidth = iaUnwrapped[i * 3 + 2];
+					
+					if (i == 0)
+					{
+						iWidth += iIconWidth;
+					}
+					
+					if (i == cnt - 1)
+					{
+						iNaturalLastWidth = iWidth;
+					}
+					else
+					{
+						iNaturalWidth = Math.max(iNaturalWidth, iWidth);
+					}
+				}
+			}
+			
+			fntNatural = font;
+		}
+		
+		if (icon != null && !bIconLeading)
+		{
+			return Math.max(iNaturalWidth, iNaturalLastWidth + icon.getIconWidth());
+		}
+		
+		return Math.max(iNaturalWidth, iNaturalLastWidth);
+	}
+	
+	/**
+	 * Measures the unwrapped paragraphs, starting with the given paragraph, for the natural 
+	 * width. The width of the last paragraph is kept separately, because it grows if text is 
+	 * appended and a trailing icon is placed after it.
+	 * 
+	 * @param pMetrics the font metrics
+	 * @param pStart the start offset of the first paragraph
+	 */
+	private void measureParagraphs(FontMetrics pMetrics, int pStart)
+	{
+		int iStart = pStart;
+		
+		while (iStart <= sText.length())
+		{
+			int iEnd = sText.indexOf('\n', iStart);
+			
+			if (iEnd < 0)
+			{
+				iEnd = sText.length();
+			}
+			
+			int iWidth = LineBreakCache.getWidth(sText, pMetrics, iStart, iEnd);
+			
+			if (iStart == 0 && bIconLeading && icon != null)
+			{
+				iWidth += icon.getIconWidth();
+			}
+			
+			if (iEnd == sText.length())
+			{
+				iNaturalLastWidth = iWidth;
+			}
+			else
+			{
+				iNaturalWidth = Math.max(iNaturalWidth, iWidth);
+			}
+			
+			iStart = iEnd + 1;
+		}
+	}
+	
+	/**
+	 * Gets the height of the text, wrapped to the given width.
+	 * 
+	 * @param pWrapWidth the wrap width or <code>-1</code> for unwrapped text
+	 * @return the height
+	 */
+	private int getTextHeight(int pWrapWidth)
+	{
+		layoutLines(pWrapWidth);
+		
+		FontMetrics fm = getFontMetrics(fntLines);
+		
+		int iHeight = iLineCount * fm.getHeight();
+		
+		if (iIconLine >= 0)
+		{
+			iHeight += getLineAscent(fm, iIconLine) - fm.getAscent();
+		}
+		
+		return iHeight;
+	}
+	
+	/**
+	 * Wraps the text, if not already done for the given width and the current font. The
+	 * icon is placed before the first line or after the last line.
+	 * 
+	 * @param pWrapWidth the wrap width or <code>-1</code> for unwrapped text
+	 */
+	private void layoutLines(int pWrapWidth)
+	{
+		Font font = getFont();
+		
+		if (font.equals(fntLines) && iLinesWidth == pWrapWidth)
+		{
+			return;
+		}
+		
+		FontMetrics fm = getFontMetrics(font);
+		
+		int iIconWidth = icon != null ? icon.getIconWidth() : 0;
+		
+		if (tiLayout != null)
+		{
+			tiLayout.stop();
+		}
+		
+		if (iMaximumLines > 0)
+		{
+			iaLines = breakMaximumLines(fm, pWrapWidth, bIconLeading ? iIconWidth : 0);
+		}
+		else if (isLargeText())
+		{
+			iaLines = LineBreakCache.breakLines(sText, 0, iLayoutChunkSize, fm, pWrapWidth, bIconLeading ? iIconWidth : 0);
+		}
+		else
+		{
+			iaLines = LineBreakCache.getLines(sText, fm, pWrapWidth, bIconLeading ? iIconWidth : 0);
+		}
+		
+		iLineCount = iaLines.length / 3;
+		
+		fntLines = font;
+		iLinesWidth = pWrapWidth;
+		
+		linesWrapped(fm);
+	}
+	
+	/**
+	 * Wraps the text until the maximum number of lines is reached, without caching, because 
+	 * only the first lines of the text are needed.
+	 * 
+	 * @param pMetrics the font metrics
+	 * @param pWrapWidth the wrap width or <code>-1</code> for unwrapped text
+	 * @param pIndent the space before the first line
+	 * @return the start offset, end offset and width of the wrapped lines
+	 */
+	private int[] breakMaximumLines(FontMetrics pMetrics, int pWrapWidth, int pIndent)
+	{
+		int[] iaResult = LineBreakCache.breakLines(sText, 0, LIMITED_CHUNK_SIZE, pMetrics, pWrapWidth, pIndent);
+		
+		int iEnd = iaResult[iaResult.length - 2];
+		
+		while (iaResult.length / 3 < iMaximumLines && iEnd < sText.length())
+		{
+			int iNext = sText.charAt(iEnd) == '\n' ? iEnd + 1 : iEnd;
+			
+			int[] iaNext = LineBreakCache.breakLines(sText, iNext, iNext + LIMITED_CHUNK_SIZE, pMetrics, pWrapWidth, 0);
+			
+			int[] iaNew = new int[iaResult.length + iaNext.length];
+			
+			System.arraycopy(iaResult, 0, iaNew, 0, iaResult.length);
+			System.arraycopy(iaNext, 0, iaNew, iaResult.length, iaNext.length);
+			
+			iaResult = iaNew;
+			
+			iEnd = iaResult[iaResult.length - 2];
+		}
+		
+		return iaResult;
+	}
+	
+	/**
+	 * Wraps the next part of a large text.
+	 */
+	private void layoutNextLines()
+	{
+		if (fntLines == null || iLayoutNext < 0)
+		{
+			return;
+		}
+		
+		int iOldCount = iLineCount;
+		
+		FontMetrics fm = getFontMetrics(fntLines);
+		
+		int[] iaNext = LineBreakCache.breakLines(sText, iLayoutNext, iLayoutNext + iLayoutChunkSize, fm, iLinesWidth, 0);
+		
+		int[] iaNew = new int[iLineCount * 3 + iaNext.length];
+		
+		System.arraycopy(iaLines, 0, iaNew, 0, iLineCount * 3);
+		System.arraycopy(iaNext, 0, iaNew, iLineCount * 3, iaNext.length);
+		
+		iaLines = iaNew;
+		iLineCount = iaNew.length / 3;
+		
+		linesWrapped(fm);
+		
+		firePropertyChange("lineCount", iOldCount, iLineCount);
+		
+		revalidate();
+		repaint();
+	}
+	
+	/**
+	 * Finishes wrapping: applies the maximum number of lines and places the icon, or continues
+	 * with the next part in the next frame.
+	 * 
+	 * @param pMetrics the font metrics
+	 */
+	private void linesWrapped(FontMetrics pMetrics)
+	{
+		iLayoutNext = -1;
+		
+		if (iMaximumLines > 0 && iLineCount >= iMaximumLines)
+		{
+			iLineCount = iMaximumLines;
+		}
+		else
+		{
+			int iEnd = iaLines[iLineCount * 3 - 2];
+			
+			if (iEnd < sText.length())
+			{
+				//not wrapped completely
+				iLayoutNext = sText.charAt(iEnd) == '\n' ? iEnd + 1 : iEnd;
+			}
+		}
+		
+		if (iLayoutNext >= 0)
+		{
+			iIconLine = bIconLeading && icon != null ? 0 : -1;
+			iIconX = 0;
+			
+			if (tiLayout == null)
+			{
+				tiLayout = new Timer(FrameClock.FRAME_INTERVAL, new ActionListener()
+				{
+					@Override
+					public void actionPerformed(ActionEvent pEvent)
+					{
+						layoutNextLines();
+					}
+				});
+				tiLayout.setRepeats(false);
+			}
+			
+			tiLayout.restart();
+		}
+		else
+		{
+			placeIcon(pMetrics, iLinesWidth);
+		}
+	}
+	
+	/**
+	 * Places the icon before the first line or after the last line. The last word will be moved
+	 * to a new line together with the icon, if the icon doesn't fit.
+	 * 
+	 * @param pMetrics the font metrics
+	 * @param pWrapWidth the wrap width or <code>-1</code> for unwrapped text
+	 */
+	private void placeIcon(FontMetrics pMetrics, int pWrapWidth)
+	{
+		iIconLine = -1;
+		iIconX = 0;
+		
+		if (icon != null)
+		{
+			if (bIconLeading)
+			{
+				iIconLine = 0;
+			}
+			else
+			{
+				int iIconWidth = icon.getIconWidth();
+				int iLast = iLineCount - 1;
+				
+				int iLineStart = iaLines[iLast * 3];
+				int iLineEnd = iaLines[iLast * 3 + 1];
+				int iWidth = iaLines[iLast * 3 + 2];
+				
+				if (pWrapWidth >= 0 && iWidth > 0 && iWidth + iIconWidth > pWrapWidth)
+				{
+					//the icon doesn't fit and wraps together with the last word, if possible
+					int iBreak = LineBreakCache.getBreakBefore(sText, iLineEnd);
+					
+					if (iBreak <= iLineStart)
+					{
+						iBreak = iLineEnd;
+					}
+					
+					//the cached lines are shared
+					int[] iaCopy = new int[iaLines.length + 3];
+					
+					System.arraycopy(iaLines, 0, iaCopy, 0, iaLines.length);
+					
+					iaCopy[iLast * 3 + 1] = iBreak;
+					iaCopy[iLast * 3 + 2] = LineBreakCache.getWidth(sText, pMetrics, iLineStart, iBreak);
+					iaCopy[iLast * 3 + 3] = iBreak;
+					iaCopy[iLast * 3 + 4] = iLineEnd;
+					iaCopy[iLast * 3 + 5] = LineBreakCache.getWidth(sText, pMetrics, iBreak, iLineEnd);
+					
+					iaLines = iaCopy;
+					iLineCount++;
+					
+					iIconLine = iLast + 1;
+					iIconX = iaCopy[iLast * 3 + 5];
+				}
+				else
+				{
+					iIconLine = iLast;
+					iIconX = iWidth;
+				}
+			}
+		}
+	}
+	
+}	// TextLabel
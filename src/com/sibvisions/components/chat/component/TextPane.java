@@ -42,6 +42,7 @@ import javax.swing.text.ViewFactory;
 import org.jdesktop.animation.timing.Animator;
 import org.jdesktop.animation.timing.TimingTargetAdapter;
 
+import com.sibvisions.components.chat.animation.FrameClock;
 import com.sibvisions.util.type.StringUtil;
 
 /**
@@ -133,6 +134,8 @@ public class TextPane extends JTextPane
 	        animator.setAcceleration(.5f);
 	        animator.setDeceleration(.5f);
 	        
+	        FrameClock.attach(animator, this);
+	        
 	        getDocument().addDocumentListener(new DocumentListener() 
 	        {
 	            @Override
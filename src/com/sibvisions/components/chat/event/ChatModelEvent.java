@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.event;
+
+import com.sibvisions.components.chat.model.ChatModel;
+
+/**
+ * The <code>ChatModelEvent</code> describes a change of a {@link ChatModel}. The affected messages
+ * are given as inclusive index range, like {@link javax.swing.event.ListDataEvent}.
+ * 
+ * @author René Jahn
+ */
+public class ChatModelEvent 
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** messages were inserted. */
+	public static final int EVENT_INSERTED = 0;
+	
+	/** messages were removed. */
+	public static final int EVENT_REMOVED = 1;
+	
+	/** messages were changed. */
+	public static final int EVENT_CHANGED = 2;
+	
+	/** the model. */
+	private ChatModel model;
+	
+	/** the event type. */
+	private int type;
+	
+	/** the first index. */
+	private int iFirstIndex;
+	
+	/** the last index. */
+	private int iLastIndex;
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Creates a new instance of <code>ChatModelEvent</code>.
+	 * 
+	 * @param pModel the model
+	 * @param pType the event type
+	 * @param pFirstIndex the first affected index
+	 * @param pLastIndex the last affected index
+	 */
+	public ChatModelEvent(ChatModel pModel, int pType, int pFirstIndex, int pLastIndex)
+	{
+		model = pModel;
+		type = pType;
+		iFirstIndex = pFirstIndex;
+		iLastIndex = pLastIndex;
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Gets the model.
+	 * 
+	 * @return the model
+	 */
+	public ChatModel getModel()
+	{
+		return model;
+	}
+	
+	/**
+	 * Gets the event type.
+	 * 
+	 * @return {@link #EVENT_INSERTED}, {@link #EVENT_REMOVED} or {@link #EVENT_CHANGED}
+	 */
+	public int getType()
+	{
+		return type;
+	}
+	
+	/**
+	 * Gets the first affected index.
+	 * 
+	 * @return the index
+	 */
+	public int getFirstIndex()
+	{
+		return iFirstIndex;
+	}
+	
+	/**
+	 * Gets the last affected index (inclusive).
+	 * 
+	 * @return the index
+	 */
+	public int getLastIndex()
+	{
+		return iLastIndex;
+	}
+	
+}	// ChatModelEvent
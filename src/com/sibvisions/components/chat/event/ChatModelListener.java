@@ -0,0 +1,38 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.event;
+
+import com.sibvisions.components.chat.model.ChatModel;
+
+/**
+ * The <code>ChatModelListener</code> is a listener for {@link ChatModel} changes.
+ * 
+ * @author René Jahn
+ */
+public interface ChatModelListener 
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Method definitions
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Invoked whenever messages were inserted, changed or removed.
+	 * 
+	 * @param pEvent the event
+	 */
+	public void chatModelChanged(ChatModelEvent pEvent);
+	
+}	// ChatModelListener
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.model;
+
+import java.awt.Color;
+
+import com.sibvisions.components.chat.Message.Type;
+
+/**
+ * The <code>ChatMessage</code> is an immutable, lightweight message record of a {@link ChatModel}. 
+ * It doesn't hold any UI resources, so many conversations can be kept in memory cheaply.
+ * 
+ * @author René Jahn
+ */
+public final class ChatMessage 
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the text. */
+	private final String text;
+	
+	/** the message type. */
+	private final Type type;
+	
+	/** the background color. */
+	private final Color colBackground;
+	
+	/** the foreground color. */
+	private final Color colForeground;
+	
+	/** the creation time. */
+	private final long lTimestamp;
+	
+	/** whether the message is a typing message. */
+	private final boolean bTyping;
+	
+	/** whether a large message shows the whole text. */
+	private final boolean bExpanded;
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Creates a new instance of <code>ChatMessage</code> with default colors.
+	 * 
+	 * @param pText the text
+	 * @param pType the message type
+	 */
+	public ChatMessage(String pText, Type pType)
+	{
+		this(pText, pType, null, null, false, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Creates a new instance of <code>ChatMessage</code>.
+	 * 
+	 * @param pText the text
+	 * @param pType the message type
+	 * @param pBackground the background color or <code>null</code> for the default color
+	 * @param pForeground the foreground color or <code>null</code> for the default color
+	 * @param pTyping whether the message is a typing message
+	 * @param pTimestamp the creation time
+	 */
+	public ChatMessage(String pText, Type pType, Color pBackground, Color pForeground, boolean pTyping, long pTimestamp)
+	{
+		this(pText, pType, pBackground, pForeground, pTyping, pTimestamp, false);
+	}
+	
+	/**
+	 * Creates a new instance of <code>ChatMessage</code>.
+	 * 
+	 * @param pText the text
+	 * @param pType the message type
+	 * @param pBackground the background color or <code>null</code> for the default color
+	 * @param pForeground the foreground color or <code>null</code> for the default color
+	 * @param pTyping whether the message is a typing message
+	 * @param pTimestamp the creation time
+	 * @param pExpanded whether a large message shows the whole text
+	 */
+	public ChatMessage(String pText, Type pType, Color pBackground, Color pForeground, boolean pTyping, long pTimestamp, boolean pExpanded)
+	{
+		if (pType == null)
+		{
+			throw new IllegalArgumentException("Message type is null!");
+		}
+		
+		text = pText;
+		type = pType;
+		colBackground = pBackground;
+		colForeground = pForeground;
+		bTyping = pTyping;
+		lTimestamp = pTimestamp;
+		bExpanded = pExpanded;
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Gets the text.
+	 * 
+	 * @return the text
+	 */
+	public String getText()
+	{
+		return text;
+	}
+	
+	/**
+	 * Gets the message type.
+	 * 
+	 * @return the type
+	 */
+	public Type getType()
+	{
+		return type;
+	}
+	
+	/**
+	 * Gets the background color.
+	 * 
+	 * @return the color or <code>null</code> for the default color
+	 */
+	public Color getBackground()
+	{
+		return colBackground;
+	}
+	
+	/**
+	 * Gets the foreground color.
+	 * 
+	 * @return the color or <code>null</code> for the default color
+	 */
+	public Color getForeground()
+	{
+		return colForeground;
+	}
+	
+	/**
+	 * Gets whether the message is a typing message.
+	 * 
+	 * @return <code>true</code> if typing, <code>false</code> otherwise
+	 */
+	public boolean isTyping()
+	{
+		return bTyping;
+	}
+	
+	/**
+	 * Gets whether a large message shows the whole text. This is the state of the view, which
+	 * is kept while the view is recycled.
+	 * 
+	 * @return <code>true</code> if the whole text is shown, <code>false</code> if collapsed
+	 */
+	public boolean isExpanded()
+	{
+		return bExpanded;
+	}
+	
+	/**
+	 * Gets the creation time.
+	 * 
+	 * @return the time in milliseconds
+	 */
+	public long getTimestamp()
+	{
+		return lTimestamp;
+	}
+	
+	/**
+	 * Gets the estimated memory size of this message.
+	 * 
+	 * @return the size in bytes
+	 */
+	public long getEstimatedSize()
+	{
+		//object header and fields, plus string and char array
+		long lSize = 48;
+		
+		if (text != null)
+		{
+			lSize += 40 + 2L * text.length();
+		}
+		
+		return lSize;
+	}
+	
+	/**
+	 * Creates a copy of this message with another text.
+	 * 
+	 * @param pText the text
+	 * @return the new message
+	 */
+	public ChatMessage withText(String pText)
+	{
+		return new ChatMessage(pText, type, colBackground, colForeground, bTyping, lTimestamp, bExpanded);
+	}
+	
+	/**
+	 * Creates a copy of this message with other colors.
+	 * 
+	 * @param pBackground the background color
+	 * @param pForeground the foreground color
+	 * @return the new message
+	 */
+	public ChatMessage withColors(Color pBackground, Color pForeground)
+	{
+		return new ChatMessage(text, type, pBackground, pForeground, bTyping, lTimestamp, bExpanded);
+	}
+	
+	/**
+	 * Creates a copy of this message with another typing flag.
+	 * 
+	 * @param pTyping whether the message is a typing message
+	 * @return the new message
+	 */
+	public ChatMessage withTyping(boolean pTyping)
+	{
+		return new ChatMessage(text, type, colBackground, colForeground, pTyping, lTimestamp, bExpanded);
+	}
+	
+	/**
+	 * Creates a copy of this message with another expanded state.
+	 * 
+	 * @param pExpanded whether a large message shows the whole text
+	 * @return the new message
+	 */
+	public ChatMessage withExpanded(boolean pExpanded)
+	{
+		return new ChatMessage(text, type, colBackground, colForeground, bTyping, lTimestamp, pExpanded);
+	}
+	
+}	// ChatMessage
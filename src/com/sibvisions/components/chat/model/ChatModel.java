@@ -0,0 +1,112 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.model;
+
+import java.util.Collection;
+
+import com.sibvisions.components.chat.event.ChatModelListener;
+
+/**
+ * The <code>ChatModel</code> defines the data of a chat, independent of the view. It's like a 
+ * {@link javax.swing.ListModel} for {@link ChatMessage}s. All changes are propagated to the 
+ * registered {@link ChatModelListener}s.
+ * 
+ * @author René Jahn
+ */
+public interface ChatModel 
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Method definitions
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Gets the number of messages.
+	 * 
+	 * @return the number of messages
+	 */
+	public int getMessageCount();
+	
+	/**
+	 * Gets the message at the given position.
+	 * 
+	 * @param pIndex the position
+	 * @return the message
+	 */
+	public ChatMessage getMessage(int pIndex);
+	
+	/**
+	 * Gets the position of the given message (by reference).
+	 * 
+	 * @param pMessage the message
+	 * @return the position or <code>-1</code> if the message wasn't found
+	 */
+	public int indexOf(ChatMessage pMessage);
+	
+	/**
+	 * Inserts a message at the given position.
+	 * 
+	 * @param pIndex the position
+	 * @param pMessage the message
+	 */
+	public void addMessage(int pIndex, ChatMessage pMessage);
+	
+	/**
+	 * Inserts messages at the given position. All messages will be announced with one event.
+	 * 
+	 * @param pIndex the position
+	 * @param pMessages the messages
+	 */
+	public void addMessages(int pIndex, Collection<ChatMessage> pMessages);
+	
+	/**
+	 * Replaces the message at the given position.
+	 * 
+	 * @param pIndex the position
+	 * @param pMessage the new message
+	 */
+	public void setMessage(int pIndex, ChatMessage pMessage);
+	
+	/**
+	 * Removes the message at the given position.
+	 * 
+	 * @param pIndex the position
+	 * @return the removed message
+	 */
+	public ChatMessage removeMessage(int pIndex);
+	
+	/**
+	 * Removes messages. All messages will be announced with one event.
+	 * 
+	 * @param pIndex the first position
+	 * @param pLength the number of messages
+	 */
+	public void removeMessages(int pIndex, int pLength);
+	
+	/**
+	 * Adds a model listener.
+	 * 
+	 * @param pListener the listener
+	 */
+	public void addChatModelListener(ChatModelListener pListener);
+	
+	/**
+	 * Removes a model listener.
+	 * 
+	 * @param pListener the listener
+	 */
+	public void removeChatModelListener(ChatModelListener pListener);
+	
+}	// ChatModel
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.model;
+
+import java.util.Collection;
+
+import com.sibvisions.components.chat.event.ChatModelEvent;
+import com.sibvisions.components.chat.event.ChatModelListener;
+import com.sibvisions.util.ArrayUtil;
+
+/**
+ * The <code>DefaultChatModel</code> is a simple list based {@link ChatModel}. Like all Swing 
+ * models, it should be used from the event dispatch thread only.
+ * 
+ * @author René Jahn
+ */
+public class DefaultChatModel implements ChatModel
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the messages. */
+	private ArrayUtil<ChatMessage> liMessages = new ArrayUtil<ChatMessage>();
+	
+	/** the model listeners. */
+	private ArrayUtil<ChatModelListener> liListeners = new ArrayUtil<ChatModelListener>();
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Interface implementation
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getMessageCount()
+	{
+		return liMessages.size();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public ChatMessage getMessage(int pIndex)
+	{
+		return liMessages.get(pIndex);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int indexOf(ChatMessage pMessage)
+	{
+		return liMessages.indexOfReference(pMessage);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void addMessage(int pIndex, ChatMessage pMessage)
+	{
+		liMessages.add(pIndex, pMessage);
+		
+		fireModelChanged(ChatModelEvent.EVENT_INSERTED, pIndex, pIndex);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void addMessages(int pIndex, Collection<ChatMessage> pMessages)
+	{
+		int iSize = pMessages.size();
+		
+		if (iSize > 0)
+		{
+			liMessages.addAll(pIndex, pMessages);
+			
+			fireModelChanged(ChatModelEvent.EVENT_INSERTED, pIndex, pIndex + iSize - 1);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setMessage(int pIndex, ChatMessage pMessage)
+	{
+		liMessages.set(pIndex, pMessage);
+		
+		fireModelChanged(ChatModelEvent.EVENT_CHANGED, pIndex, pIndex);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public ChatMessage removeMessage(int pIndex)
+	{
+		ChatMessage msg = liMessages.remove(pIndex);
+		
+		fireModelChanged(ChatModelEvent.EVENT_REMOVED, pIndex, pIndex);
+		
+		return msg;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void removeMessages(int pIndex, int pLength)
+	{
+		if (pLength > 0)
+		{
+			liMessages.removeRange(pIndex, pIndex + pLength);
+			
+			fireModelChanged(ChatModelEvent.EVENT_REMOVED, pIndex, pIndex + pLength - 1);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void addChatModelListener(ChatModelListener pListener)
+	{
+		synchronized (liListeners)
+		{
+			if (!liListeners.contains(pListener))
+			{
+				liListeners.add(pListener);
+			}
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void removeChatModelListener(ChatModelListener pListener)
+	{
+		synchronized (liListeners)
+		{
+			liListeners.remove(pListener);
+		}
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Adds a message at the end.
+	 * 
+	 * @param pMessage the message
+	 */
+	public void addMessage(ChatMessage pMessage)
+	{
+		addMessage(liMessages.size(), pMessage);
+	}
+	
+	/**
+	 * Removes all messages.
+	 */
+	public void clear()
+	{
+		int iCount = liMessages.size();
+		
+		if (iCount > 0)
+		{
+			liMessages.clear();
+			
+			fireModelChanged(ChatModelEvent.EVENT_REMOVED, 0, iCount - 1);
+		}
+	}
+	
+	/**
+	 * Gets all available model listeners.
+	 * 
+	 * @return the listeners
+	 */
+	public ChatModelListener[] getChatModelListeners()
+	{
+		synchronized (liListeners)
+		{
+			return liListeners.toArray(new ChatModelListener[liListeners.size()]);
+		}
+	}
+	
+	/**
+	 * Fires a model change.
+	 * 
+	 * @param pType the event type
+	 * @param pFirstIndex the first affected index
+	 * @param pLastIndex the last affected index
+	 */
+	protected void fireModelChanged(int pType, int pFirstIndex, int pLastIndex)
+	{
+		ChatModelListener[] listeners = getChatModelListeners();
+		
+		if (listeners.length > 0)
+		{
+			ChatModelEvent event = new ChatModelEvent(this, pType, pFirstIndex, pLastIndex);
+			
+			for (ChatModelListener lis : listeners)
+			{
+				lis.chatModelChanged(event);
+			}
+		}
+	}
+	
+}	// DefaultChatModel
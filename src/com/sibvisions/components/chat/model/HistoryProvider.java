@@ -0,0 +1,45 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.model;
+
+import java.util.List;
+
+/**
+ * The <code>HistoryProvider</code> delivers older messages of a chat on demand. The chat asks
+ * for the next page if the user scrolls near the top and prefetches one page ahead. All calls
+ * will be made from a background thread, never from the event dispatch thread.
+ * 
+ * @author René Jahn
+ */
+public interface HistoryProvider
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Method definitions
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Loads the messages before the given message.
+	 * 
+	 * @param pOldest the oldest message of the chat or <code>null</code> to load the newest
+	 *                messages, e.g. if the chat is empty
+	 * @param pCount the maximum number of messages
+	 * @return the messages in chronological order (oldest first). An empty list means that no
+	 *         older messages are available
+	 * @throws Exception if loading failed
+	 */
+	public List<ChatMessage> loadHistory(ChatMessage pOldest, int pCount) throws Exception;
+
+}	// HistoryProvider
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.model;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+import com.sibvisions.components.chat.Message.Type;
+import com.sibvisions.util.ArrayUtil;
+
+/**
+ * The <code>MessageStore</code> is a local, file based store for {@link ChatMessage}s which were
+ * evicted from memory. New messages will be appended at the end of the file and messages will be
+ * read back from the end, so the store always contains the messages which are older than the 
+ * messages in memory.
+ * <p>
+ * Every record ends with its length, so the file can be read backwards without an index.
+ * 
+ * @author René Jahn
+ */
+public class MessageStore implements Closeable
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the file. */
+	private File file;
+	
+	/** the file access. */
+	private RandomAccessFile raf;
+	
+	/** the number of stored messages. */
+	private int iCount;
+	
+	/** whether the file should be deleted on close. */
+	private boolean bTemporary;
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Creates a new instance of <code>MessageStore</code> with a temporary file. The file will be
+	 * deleted on close or on exit.
+	 * 
+	 * @throws IOException if creating the file fails
+	 */
+	public MessageStore() throws IOException
+	{
+		this(createTempFile());
+		
+		bTemporary = true;
+	}
+	
+	/**
+	 * Creates a new instance of <code>MessageStore</code> for the given file. Existing messages 
+	 * will be kept.
+	 * 
+	 * @param pFile the file
+	 * @throws IOException if opening the file fails
+	 */
+	public MessageStore(File pFile) throws IOException
+	{
+		file = pFile;
+		
+		raf = new RandomAccessFile(pFile, "rw");
+		
+		try
+		{
+			//count existing messages
+			long lPos = raf.length();
+			
+			while (lPos > 0)
+			{
+				lPos -= 4 + readLength(lPos);
+				
+				iCount++;
+			}
+		}
+		catch (IOException ioe)
+		{
+			raf.close();
+			raf = null;
+			
+			throw ioe;
+		}
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Interface implementation
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public synchronized void close() throws IOException
+	{
+		if (raf != null)
+		{
+			raf.close();
+			raf = null;
+			
+			if (bTemporary)
+			{
+				file.delete();
+			}
+		}
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Creates a temporary file.
+	 * 
+	 * @return the file
+	 * @throws IOException if creating the file fails
+	 */
+	private static File createTempFile() throws IOException
+	{
+		File fiTemp = File.createTempFile("chat", ".messages");
+		fiTemp.deleteOnExit();
+		
+		return fiTemp;
+	}
+	
+	/**
+	 * Appends messages. The messages have to be older than the messages in memory and newer than
+	 * all stored messages.
+	 * 
+	 * @param pMessages the messages in chronological order
+	 * @throws IOException if writing fails
+	 */
+	public synchronized void append(Collection<ChatMessage> pMessages) throws IOException
+	{
+		checkOpen();
+		
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(baos);
+		
+		for (ChatMessage msg : pMessages)
+		{
+			int iStart = dos.size();
+			
+			write(dos, msg);
+			
+			dos.writeInt(dos.size() - iStart);
+		}
+		
+		dos.flush();
+		
+		raf.seek(raf.length());
+		raf.write(baos.toByteArray());
+		
+		iCount += pMessages.size();
+	}
+	
+	/**
+	 * Reads and removes the newest stored messages.
+	 * 
+	 * @param pCount the maximum number of messages
+	 * @return the messages in chronological order
+	 * @throws IOException if reading fails
+	 */
+	public synchronized List<ChatMessage> readLast(int pCount) throws IOException
+	{
+		checkOpen();
+		
+		int iRead = Math.min(pCount, iCount);
+		
+		ChatMessage[] messages = new ChatMessage[iRead];
+		
+		long lPos = raf.length();
+		
+		for (int i = iRead - 1; i >= 0; i--)
+		{
+			int iLength = readLength(lPos);
+			
+			lPos -= 4 + iLength;
+			
+			byte[] byData = new byte[iLength];
+			
+			raf.seek(lPos);
+			raf.readFully(byData);
+			
+			messages[i] = read(new DataInputStream(new ByteArrayInputStream(byData)));
+		}
+		
+		raf.setLength(lPos);
+		
+		iCount -= iRead;
+		
+		return new ArrayUtil<ChatMessage>(messages);
+	}
+	
+	/**
+	 * Gets the number of stored messages.
+	 * 
+	 * @return the number of messages
+	 */
+	public synchronized int size()
+	{
+		return iCount;
+	}
+	
+	/**
+	 * Gets the file.
+	 * 
+	 * @return the file
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+	
+	/**
+	 * Checks whether the store is open.
+	 * 
+	 * @throws IOException if the store was closed
+	 */
+	private void checkOpen() throws IOException
+	{
+		if (raf == null)
+		{
+			throw new IOException("Message store is closed!");
+		}
+	}
+	
+	/**
+	 * Reads the length of the message which ends at the given position.
+	 * 
+	 * @param pPos the end position of the message
+	 * @return the length of the message data
+	 * @throws IOException if reading fails or the length is invalid, e.g. in a truncated file
+	 */
+	private int readLength(long pPos) throws IOException
+	{
+		if (pPos < 4)
+		{
+			throw new IOException("Message store is corrupt!");
+		}
+		
+		raf.seek(pPos - 4);
+		
+		int iLength = raf.readInt();
+		
+		if (iLength < 0 || iLength > pPos - 4)
+		{
+			throw new IOException("Message store is corrupt!");
+		}
+		
+		return iLength;
+	}
+	
+	/**
+	 * Writes a message.
+	 * 
+	 * @param pOut the output
+	 * @param pMessage the message
+	 * @throws IOException if writing fails
+	 */
+	private static void write(DataOutputStream pOut, ChatMessage pMessage) throws IOException
+	{
+		String sText = pMessage.getText();
+		
+		if (sText == null)
+		{
+			pOut.writeInt(-1);
+		}
+		else
+		{
+			byte[] byText = sText.getBytes(StandardCharsets.UTF_8);
+			
+			pOut.writeInt(byText.length);
+			pOut.write(byText);
+		}
+		
+		pOut.writeByte(pMessage.getType().ordinal());
+		pOut.writeBoolean(pMessage.isTyping());
+		pOut.writeLong(pMessage.getTimestamp());
+		
+		writeColor(pOut, pMessage.getBackground());
+		writeColor(pOut, pMessage.getForeground());
+	}
+	
+	/**
+	 * Reads a message.
+	 * 
+	 * @param pIn the input
+	 * @return the message
+	 * @throws IOException if reading fails
+	 */
+	private static ChatMessage read(DataInputStream pIn) throws IOException
+	{
+		String sText = null;
+		
+		int iLength = pIn.readInt();
+		
+		if (iLength >= 0)
+		{
+			byte[] byText = new byte[iLength];
+			pIn.readFully(byText);
+			
+			sText = new String(byText, StandardCharsets.UTF_8);
+		}
+		
+		Type type = Type.values()[pIn.readByte()];
+		boolean bTyping = pIn.readBoolean();
+		long lTimestamp = pIn.readLong();
+		
+		Color colBackground = readColor(pIn);
+		Color colForeground = readColor(pIn);
+		
+		return new ChatMessage(sText, type, colBackground, colForeground, bTyping, lTimestamp);
+	}
+	
+	/**
+	 * Writes a color.
+	 * 
+	 * @param pOut the output
+	 * @param pColor the color or <code>null</code>
+	 * @throws IOException if writing fails
+	 */
+	private static void writeColor(DataOutputStream pOut, Color pColor) throws IOException
+	{
+		pOut.writeBoolean(pColor != null);
+		
+		if (pColor != null)
+		{
+			pOut.writeInt(pColor.getRGB());
+		}
+	}
+	
+	/**
+	 * Reads a color.
+	 * 
+	 * @param pIn the input
+	 * @return the color or <code>null</code>
+	 * @throws IOException if reading fails
+	 */
+	private static Color readColor(DataInputStream pIn) throws IOException
+	{
+		if (pIn.readBoolean())
+		{
+			return new Color(pIn.readInt(), true);
+		}
+		
+		return null;
+	}
+	
+}	// MessageStore
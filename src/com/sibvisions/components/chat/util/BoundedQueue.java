@@ -0,0 +1,171 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>BoundedQueue</code> is a lock-free queue with a maximum number of elements. It's
+ * made for many producer threads and one consumer thread. Elements which don't fit into the 
+ * queue will be dropped and counted.
+ * 
+ * @author René Jahn
+ * @param <E> the element type
+ */
+public final class BoundedQueue<E>
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the elements. */
+	private final ConcurrentLinkedQueue<E> queue = new ConcurrentLinkedQueue<E>();
+	
+	/** the number of elements. */
+	private final AtomicInteger size = new AtomicInteger();
+	
+	/** the number of dropped elements. */
+	private final AtomicLong dropped = new AtomicLong();
+	
+	/** the maximum number of elements. */
+	private volatile int iCapacity;
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Creates a new instance of <code>BoundedQueue</code>.
+	 * 
+	 * @param pCapacity the maximum number of elements
+	 */
+	public BoundedQueue(int pCapacity)
+	{
+		setCapacity(pCapacity);
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Adds an element, if the queue is not full.
+	 * 
+	 * @param pElement the element
+	 * @return <code>true</code> if the element was added, <code>false</code> if it was dropped
+	 */
+	public boolean offer(E pElement)
+	{
+		if (pElement == null)
+		{
+			throw new IllegalArgumentException("Element is null!");
+		}
+		
+		int iSize;
+		
+		do
+		{
+			iSize = size.get();
+			
+			if (iSize >= iCapacity)
+			{
+				dropped.incrementAndGet();
+				
+				return false;
+			}
+		}
+		while (!size.compareAndSet(iSize, iSize + 1));
+		
+		queue.offer(pElement);
+		
+		return true;
+	}
+	
+	/**
+	 * Removes the first element.
+	 * 
+	 * @return the element or <code>null</code> if the queue is empty
+	 */
+	public E poll()
+	{
+		E element = queue.poll();
+		
+		if (element != null)
+		{
+			size.decrementAndGet();
+		}
+		
+		return element;
+	}
+	
+	/**
+	 * Gets the number of queued elements.
+	 * 
+	 * @return the number of elements
+	 */
+	public int size()
+	{
+		return size.get();
+	}
+	
+	/**
+	 * Gets whether the queue is empty.
+	 * 
+	 * @return <code>true</code> if no element is queued
+	 */
+	public boolean isEmpty()
+	{
+		return size.get() == 0;
+	}
+	
+	/**
+	 * Gets the number of dropped elements.
+	 * 
+	 * @return the number of elements which didn't fit into the queue
+	 */
+	public long getDroppedCount()
+	{
+		return dropped.get();
+	}
+	
+	/**
+	 * Sets the maximum number of elements.
+	 * 
+	 * @param pCapacity the maximum number of elements
+	 */
+	public void setCapacity(int pCapacity)
+	{
+		if (pCapacity <= 0)
+		{
+			throw new IllegalArgumentException("Capacity must be greater than 0!");
+		}
+		
+		iCapacity = pCapacity;
+	}
+	
+	/**
+	 * Gets the maximum number of elements.
+	 * 
+	 * @return the maximum number of elements
+	 */
+	public int getCapacity()
+	{
+		return iCapacity;
+	}
+	
+}	// BoundedQueue
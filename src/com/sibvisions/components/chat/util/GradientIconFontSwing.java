@@ -25,6 +25,8 @@ import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
@@ -60,6 +62,25 @@ public final class GradientIconFontSwing
 		BottomLeftToTopRight
 	};
 	
+	/** the maximum number of cached icons. */
+	private static final int MAX_CACHED_ICONS = 128;
+	
+	/** the cached icons. */
+	private static LinkedHashMap<IconKey, Icon> hmpIcons = new LinkedHashMap<IconKey, Icon>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<IconKey, Icon> pEldest)
+		{
+			return size() > MAX_CACHED_ICONS;
+		}
+	};
+	
+	/** the number of cache hits. */
+	private static long lHits;
+	
+	/** the number of cache misses. */
+	private static long lMisses;
+	
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     // Initialization
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
@@ -77,7 +98,21 @@ public final class GradientIconFontSwing
     //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 	
     /**
-     * Builds an icon.
+     * Builds an icon without gradient. The icon will be cached.
+     *
+     * @param pCode the icon code
+     * @param pSize the size
+     * @param pColor the color
+     * @return the icon
+     */
+    public static Icon buildIcon(IconCode pCode, float pSize, Color pColor)
+    {
+    	return buildIcon(pCode, pSize, pColor, pColor, GradientDirection.None);
+    }
+    
+    /**
+     * Builds an icon. Icons are immutable and will be cached, so the same icon will be returned 
+     * for the same parameters.
      *
      * @param pCode the icon code
      * @param pSize the size
@@ -88,14 +123,80 @@ public final class GradientIconFontSwing
      */
     public static Icon buildIcon(IconCode pCode, float pSize, Color pStart, Color pEnd, GradientDirection pDirection)
 	{
-		if (pDirection == null || pDirection == GradientDirection.None)
+    	boolean bGradient = pDirection != null && pDirection != GradientDirection.None;
+    	
+    	IconKey key = new IconKey(pCode, pSize, pStart, bGradient ? pEnd : pStart, bGradient ? pDirection : GradientDirection.None);
+    	
+    	synchronized (hmpIcons)
+    	{
+    		Icon icon = hmpIcons.get(key);
+    		
+    		if (icon != null)
+    		{
+    			lHits++;
+    			
+    			return icon;
+    		}
+    		
+    		lMisses++;
+    	}
+    	
+    	Icon icon;
+    	
+		if (bGradient)
 		{
-			return IconFontSwing.buildIcon(pCode, pSize, pStart);
+			icon = new ImageIcon(buildImage(pCode, pSize, pStart, pEnd, pDirection));
 		}
-    	
-		return new ImageIcon(buildImage(pCode, pSize, pStart, pEnd, pDirection));
+		else
+		{
+			icon = IconFontSwing.buildIcon(pCode, pSize, pStart);
+		}
+		
+		synchronized (hmpIcons)
+		{
+			hmpIcons.put(key, icon);
+		}
+		
+		return icon;
 	}
     
+    /**
+     * Gets the number of icons which were found in the cache.
+     * 
+     * @return the number of cache hits
+     */
+    public static long getCacheHitCount()
+    {
+    	synchronized (hmpIcons)
+    	{
+    		return lHits;
+    	}
+    }
+    
+    /**
+     * Gets the number of icons which had to be built.
+     * 
+     * @return the number of cache misses
+     */
+    public static long getCacheMissCount()
+    {
+    	synchronized (hmpIcons)
+    	{
+    		return lMisses;
+    	}
+    }
+    
+    /**
+     * Removes all cached icons.
+     */
+    public static void clearCache()
+    {
+    	synchronized (hmpIcons)
+    	{
+    		hmpIcons.clear();
+    	}
+    }
+    
     /**
      * Builds an image.
      *
@@ -206,5 +307,98 @@ public final class GradientIconFontSwing
         
         return bimg;		
 	}
+	
+    //****************************************************************
+    // Subclass definition
+    //****************************************************************
+	
+	/**
+	 * The <code>IconKey</code> identifies a cached icon.
+	 * 
+	 * @author René Jahn
+	 */
+	private static final class IconKey
+	{
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Class members
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/** the icon code. */
+		private final IconCode code;
+		
+		/** the gradient direction. */
+		private final GradientDirection direction;
+		
+		/** the size. */
+		private final float fSize;
+		
+		/** the start color. */
+		private final int iStart;
+		
+		/** the end color. */
+		private final int iEnd;
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Initialization
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		/**
+		 * Creates a new instance of <code>IconKey</code>.
+		 * 
+		 * @param pCode the icon code
+		 * @param pSize the size
+		 * @param pStart the start color
+		 * @param pEnd the end color
+		 * @param pDirection the gradient direction
+		 */
+		private IconKey(IconCode pCode, float pSize, Color pStart, Color pEnd, GradientDirection pDirection)
+		{
+			code = pCode;
+			fSize = pSize;
+			iStart = pStart.getRGB();
+			iEnd = pEnd.getRGB();
+			direction = pDirection;
+		}
+		
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	    // Overwritten methods
+	    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+		@Override
+		public boolean equals(Object pObject)
+		{
+			if (pObject == this)
+			{
+				return true;
+			}
+			
+			if (!(pObject instanceof IconKey))
+			{
+				return false;
+			}
+			
+			IconKey key = (IconKey)pObject;
+			
+			return code.equals(key.code)
+				   && direction == key.direction
+				   && fSize == key.fSize
+				   && iStart == key.iStart
+				   && iEnd == key.iEnd;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			int iHash = code.hashCode();
+			
+			iHash = 31 * iHash + direction.hashCode();
+			iHash = 31 * iHash + Float.floatToIntBits(fSize);
+			iHash = 31 * iHash + iStart;
+			iHash = 31 * iHash + iEnd;
+			
+			return iHash;
+		}
+		
+	}	// IconKey
     
 }	// GradientIconFontSwing
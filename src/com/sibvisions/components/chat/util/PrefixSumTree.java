@@ -0,0 +1,699 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.util;
+
+/**
+ * The <code>PrefixSumTree</code> is a list of non-negative int values, e.g. row heights, with
+ * fast prefix sums. The sums are long values, so many large values, e.g. byte sizes, won't
+ * overflow. The values are kept in small blocks and two binary indexed trees (Fenwick
+ * trees) hold the number of values and the sum of the values per block.
+ * <p>
+ * Getting or changing a value, the sum of all values before a position and the search for the
+ * position of a sum are O(log n + b), where b is the block size. Inserting or removing values at
+ * any position only shifts the values of one block. Only if a block is split or merged, the
+ * block trees are rebuilt with the next access, which is O(n / b) and happens at most once
+ * per b / 2 inserted values.
+ * 
+ * @author René Jahn
+ */
+public final class PrefixSumTree
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Class members
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/** the maximum number of values per block. */
+	private static final int BLOCK_SIZE = 128;
+	
+	/** the number of values of a block, which will be merged with a neighbour block. */
+	private static final int MERGE_SIZE = BLOCK_SIZE / 4;
+	
+	/** the blocks. */
+	private int[][] blocks;
+	
+	/** the number of values per block. */
+	private int[] iaBlockCount;
+	
+	/** the sum of the values per block. */
+	private long[] laBlockSum;
+	
+	/** the tree of the block value counts (1-based). */
+	private int[] iaCountTree;
+	
+	/** the tree of the block sums (1-based). */
+	private long[] laSumTree;
+	
+	/** the number of blocks. */
+	private int iBlocks;
+	
+	/** the number of values. */
+	private int iSize;
+	
+	/** the sum of all values. */
+	private long lTotal;
+	
+	/** whether the block trees should be rebuilt. */
+	private boolean bInvalid;
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Creates a new instance of <code>PrefixSumTree</code>.
+	 * 
+	 * @param pCapacity the initial capacity
+	 */
+	public PrefixSumTree(int pCapacity)
+	{
+		int iCapacity = Math.max(1, pCapacity / BLOCK_SIZE + 1);
+		
+		blocks = new int[iCapacity][];
+		iaBlockCount = new int[iCapacity];
+		laBlockSum = new long[iCapacity];
+		iaCountTree = new int[iCapacity + 1];
+		laSumTree = new long[iCapacity + 1];
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Gets the number of values.
+	 * 
+	 * @return the number of values
+	 */
+	public int size()
+	{
+		return iSize;
+	}
+	
+	/**
+	 * Gets the value at the given position.
+	 * 
+	 * @param pIndex the position
+	 * @return the value
+	 */
+	public int get(int pIndex)
+	{
+		checkIndex(pIndex);
+		
+		int iBlock = findBlock(pIndex);
+		
+		return blocks[iBlock][pIndex - countBefore(iBlock)];
+	}
+	
+	/**
+	 * Sets the value at the given position.
+	 * 
+	 * @param pIndex the position
+	 * @param pValue the value
+	 */
+	public void set(int pIndex, int pValue)
+	{
+		checkIndex(pIndex);
+		
+		int iBlock = findBlock(pIndex);
+		int iOffset = pIndex - countBefore(iBlock);
+		
+		int iDelta = pValue - blocks[iBlock][iOffset];
+		
+		if (iDelta != 0)
+		{
+			blocks[iBlock][iOffset] = pValue;
+			
+			updateBlock(iBlock, 0, iDelta);
+		}
+	}
+	
+	/**
+	 * Inserts values.
+	 * 
+	 * @param pIndex the first position
+	 * @param pLength the number of values
+	 * @param pValue the value for all new positions
+	 */
+	public void insert(int pIndex, int pLength, int pValue)
+	{
+		if (pIndex < 0 || pIndex > iSize)
+		{
+			throw new IndexOutOfBoundsException("Index: " + pIndex + ", Size: " + iSize);
+		}
+		
+		if (pLength <= 0)
+		{
+			return;
+		}
+		
+		int iBlock;
+		int iOffset;
+		
+		if (iBlocks == 0)
+		{
+			insertBlocks(0, 1);
+			
+			blocks[0] = new int[BLOCK_SIZE];
+			
+			iBlock = 0;
+			iOffset = 0;
+		}
+		else if (pIndex == iSize)
+		{
+			//append to the last block
+			iBlock = iBlocks - 1;
+			iOffset = iaBlockCount[iBlock];
+		}
+		else
+		{
+			iBlock = findBlock(pIndex);
+			iOffset = pIndex - countBefore(iBlock);
+		}
+		
+		int[] iaBlock = blocks[iBlock];
+		int iCount = iaBlockCount[iBlock];
+		
+		if (iCount + pLength <= BLOCK_SIZE)
+		{
+			System.arraycopy(iaBlock, iOffset, iaBlock, iOffset + pLength, iCount - iOffset);
+			
+			for (int i = iOffset, cnt = iOffset + pLength; i < cnt; i++)
+			{
+				iaBlock[i] = pValue;
+			}
+			
+			updateBlock(iBlock, pLength, (long)pLength * pValue);
+		}
+		else
+		{
+			splitBlock(iBlock, iOffset, pLength, pValue);
+		}
+		
+		iSize += pLength;
+	}
+	
+	/**
+	 * Removes values.
+	 * 
+	 * @param pIndex the first position
+	 * @param pLength the number of values
+	 */
+	public void remove(int pIndex, int pLength)
+	{
+		if (pLength <= 0)
+		{
+			return;
+		}
+		
+		if (pIndex < 0 || pIndex + pLength > iSize)
+		{
+			throw new IndexOutOfBoundsException("Index: " + pIndex + ", Length: " + pLength + ", Size: " + iSize);
+		}
+		
+		int iFirstBlock = findBlock(pIndex);
+		int iBlock = iFirstBlock;
+		int iOffset = pIndex - countBefore(iBlock);
+		int iRemaining = pLength;
+		
+		while (iRemaining > 0)
+		{
+			int[] iaBlock = blocks[iBlock];
+			int iCount = iaBlockCount[iBlock];
+			int iRemove = Math.min(iRemaining, iCount - iOffset);
+			int iEnd = iOffset + iRemove;
+			
+			long lSum = 0;
+			
+			if (iRemove == iCount)
+			{
+				lSum = laBlockSum[iBlock];
+			}
+			else
+			{
+				for (int i = iOffset; i < iEnd; i++)
+				{
+					lSum += iaBlock[i];
+				}
+				
+				System.arraycopy(iaBlock, iEnd, iaBlock, iOffset, iCount - iEnd);
+			}
+			
+			updateBlock(iBlock, -iRemove, -lSum);
+			
+			iRemaining -= iRemove;
+			iOffset = 0;
+			iBlock++;
+		}
+		
+		iSize -= pLength;
+		
+		//remove empty blocks and merge small blocks
+		int iRemoveFirst = iaBlockCount[iFirstBlock] == 0 ? iFirstBlock : iFirstBlock + 1;
+		int iRemoveLast = iBlock;
+		
+		if (iRemoveLast > iRemoveFirst && iaBlockCount[iRemoveLast - 1] != 0)
+		{
+			iRemoveLast--;
+		}
+		
+		if (iRemoveLast > iRemoveFirst)
+		{
+			removeBlocks(iRemoveFirst, iRemoveLast - iRemoveFirst);
+		}
+		
+		int iMerge = Math.min(iRemoveFirst, iBlocks - 1);
+		
+		if (iMerge >= 0)
+		{
+			mergeBlock(iMerge);
+		}
+		
+		if (iMerge > 0)
+		{
+			mergeBlock(iMerge - 1);
+		}
+	}
+	
+	/**
+	 * Removes all values.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < iBlocks; i++)
+		{
+			blocks[i] = null;
+		}
+		
+		iBlocks = 0;
+		iSize = 0;
+		lTotal = 0;
+		bInvalid = false;
+	}
+	
+	/**
+	 * Gets the sum of all values before the given position.
+	 * 
+	 * @param pIndex the position (exclusive), from <code>0</code> to {@link #size()}
+	 * @return the sum
+	 */
+	public long getSum(int pIndex)
+	{
+		if (pIndex < 0 || pIndex > iSize)
+		{
+			throw new IndexOutOfBoundsException("Index: " + pIndex + ", Size: " + iSize);
+		}
+		
+		if (pIndex == iSize)
+		{
+			return lTotal;
+		}
+		
+		int iBlock = findBlock(pIndex);
+		int iOffset = pIndex - countBefore(iBlock);
+		
+		int[] iaBlock = blocks[iBlock];
+		long lSum = prefix(laSumTree, iBlock);
+		
+		//sum the shorter part of the block
+		if (iOffset <= iaBlockCount[iBlock] / 2)
+		{
+			for (int i = 0; i < iOffset; i++)
+			{
+				lSum += iaBlock[i];
+			}
+		}
+		else
+		{
+			lSum += laBlockSum[iBlock];
+			
+			for (int i = iOffset, cnt = iaBlockCount[iBlock]; i < cnt; i++)
+			{
+				lSum -= iaBlock[i];
+			}
+		}
+		
+		return lSum;
+	}
+	
+	/**
+	 * Gets the sum of all values.
+	 * 
+	 * @return the sum
+	 */
+	public long getTotal()
+	{
+		return lTotal;
+	}
+	
+	/**
+	 * Gets the last position whose sum of all values before it, is less than or equal to the
+	 * given sum. If the values are row heights, it's the row at the given vertical position.
+	 * 
+	 * @param pSum the sum
+	 * @return the position or <code>-1</code> if there are no values
+	 */
+	public int indexOf(long pSum)
+	{
+		if (iSize == 0)
+		{
+			return -1;
+		}
+		
+		validate();
+		
+		//the number of whole blocks with a sum <= pSum
+		int iBlock = 0;
+		int iCount = 0;
+		long lRemaining = pSum;
+		
+		for (int iStep = Integer.highestOneBit(iBlocks); iStep > 0; iStep >>= 1)
+		{
+			int iNext = iBlock + iStep;
+			
+			if (iNext <= iBlocks && laSumTree[iNext] <= lRemaining)
+			{
+				iBlock = iNext;
+				lRemaining -= laSumTree[iNext];
+				iCount += iaCountTree[iNext];
+			}
+		}
+		
+		if (iBlock < iBlocks)
+		{
+			int[] iaBlock = blocks[iBlock];
+			
+			for (int i = 0, cnt = iaBlockCount[iBlock]; i < cnt && iaBlock[i] <= lRemaining; i++)
+			{
+				lRemaining -= iaBlock[i];
+				iCount++;
+			}
+		}
+		
+		//iCount is the number of values with a sum <= pSum
+		return Math.min(iCount, iSize - 1);
+	}
+	
+	/**
+	 * Gets the block which contains the given position.
+	 * 
+	 * @param pIndex the position, less than {@link #size()}
+	 * @return the block
+	 */
+	private int findBlock(int pIndex)
+	{
+		validate();
+		
+		int iBlock = 0;
+		int iRemaining = pIndex;
+		
+		for (int iStep = Integer.highestOneBit(iBlocks); iStep > 0; iStep >>= 1)
+		{
+			int iNext = iBlock + iStep;
+			
+			if (iNext <= iBlocks && iaCountTree[iNext] <= iRemaining)
+			{
+				iBlock = iNext;
+				iRemaining -= iaCountTree[iNext];
+			}
+		}
+		
+		return iBlock;
+	}
+	
+	/**
+	 * Gets the number of values before the given block.
+	 * 
+	 * @param pBlock the block
+	 * @return the number of values
+	 */
+	private int countBefore(int pBlock)
+	{
+		int iCount = 0;
+		
+		for (int i = pBlock; i > 0; i -= i & -i)
+		{
+			iCount += iaCountTree[i];
+		}
+		
+		return iCount;
+	}
+	
+	/**
+	 * Gets the sum of the first nodes of a tree, without validation.
+	 * 
+	 * @param pTree the tree
+	 * @param pCount the number of blocks
+	 * @return the sum
+	 */
+	private static long prefix(long[] pTree, int pCount)
+	{
+		long lSum = 0;
+		
+		for (int i = pCount; i > 0; i -= i & -i)
+		{
+			lSum += pTree[i];
+		}
+		
+		return lSum;
+	}
+	
+	/**
+	 * Updates the value count and the sum of a block.
+	 * 
+	 * @param pBlock the block
+	 * @param pCountDelta the changed number of values
+	 * @param pSumDelta the changed sum
+	 */
+	private void updateBlock(int pBlock, int pCountDelta, long pSumDelta)
+	{
+		iaBlockCount[pBlock] += pCountDelta;
+		laBlockSum[pBlock] += pSumDelta;
+		
+		lTotal += pSumDelta;
+		
+		if (!bInvalid)
+		{
+			for (int i = pBlock + 1; i <= iBlocks; i += i & -i)
+			{
+				iaCountTree[i] += pCountDelta;
+				laSumTree[i] += pSumDelta;
+			}
+		}
+	}
+	
+	/**
+	 * Inserts values into a block, which is too small. The values of the block and the new values
+	 * will be distributed to new blocks with the same number of values.
+	 * 
+	 * @param pBlock the block
+	 * @param pOffset the first position in the block
+	 * @param pLength the number of values
+	 * @param pValue the value for all new positions
+	 */
+	private void splitBlock(int pBlock, int pOffset, int pLength, int pValue)
+	{
+		int[] iaOld = blocks[pBlock];
+		int iOldCount = iaBlockCount[pBlock];
+		
+		int iLength = iOldCount + pLength;
+		int iNewBlocks = (iLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		
+		insertBlocks(pBlock + 1, iNewBlocks - 1);
+		
+		lTotal += (long)pLength * pValue;
+		
+		int iSource = 0;
+		
+		for (int i = 0; i < iNewBlocks; i++)
+		{
+			int iStart = (int)((long)iLength * i / iNewBlocks);
+			int iEnd = (int)((long)iLength * (i + 1) / iNewBlocks);
+			
+			//the old block will be replaced
+			int[] iaBlock = new int[BLOCK_SIZE];
+			long lSum = 0;
+			
+			for (int j = iStart; j < iEnd; j++)
+			{
+				int iValue;
+				
+				if (j >= pOffset && j < pOffset + pLength)
+				{
+					iValue = pValue;
+				}
+				else
+				{
+					iValue = iaOld[iSource++];
+				}
+				
+				iaBlock[j - iStart] = iValue;
+				lSum += iValue;
+			}
+			
+			blocks[pBlock + i] = iaBlock;
+			iaBlockCount[pBlock + i] = iEnd - iStart;
+			laBlockSum[pBlock + i] = lSum;
+		}
+		
+		bInvalid = true;
+	}
+	
+	/**
+	 * Merges a block with its next block, if both are small enough.
+	 * 
+	 * @param pBlock the block
+	 */
+	private void mergeBlock(int pBlock)
+	{
+		if (pBlock + 1 >= iBlocks)
+		{
+			return;
+		}
+		
+		int iCount = iaBlockCount[pBlock];
+		int iNextCount = iaBlockCount[pBlock + 1];
+		
+		if ((iCount < MERGE_SIZE || iNextCount < MERGE_SIZE) && iCount + iNextCount <= BLOCK_SIZE)
+		{
+			System.arraycopy(blocks[pBlock + 1], 0, blocks[pBlock], iCount, iNextCount);
+			
+			iaBlockCount[pBlock] += iNextCount;
+			laBlockSum[pBlock] += laBlockSum[pBlock + 1];
+			
+			removeBlocks(pBlock + 1, 1);
+		}
+	}
+	
+	/**
+	 * Inserts empty blocks.
+	 * 
+	 * @param pBlock the first block
+	 * @param pLength the number of blocks
+	 */
+	private void insertBlocks(int pBlock, int pLength)
+	{
+		if (pLength <= 0)
+		{
+			return;
+		}
+		
+		int iNewBlocks = iBlocks + pLength;
+		
+		if (iNewBlocks > blocks.length)
+		{
+			int iCapacity = Math.max(iNewBlocks, blocks.length * 3 / 2 + 1);
+			
+			int[][] newBlocks = new int[iCapacity][];
+			System.arraycopy(blocks, 0, newBlocks, 0, iBlocks);
+			blocks = newBlocks;
+			
+			int[] iaNewCount = new int[iCapacity];
+			System.arraycopy(iaBlockCount, 0, iaNewCount, 0, iBlocks);
+			iaBlockCount = iaNewCount;
+			
+			long[] laNewSum = new long[iCapacity];
+			System.arraycopy(laBlockSum, 0, laNewSum, 0, iBlocks);
+			laBlockSum = laNewSum;
+			
+			iaCountTree = new int[iCapacity + 1];
+			laSumTree = new long[iCapacity + 1];
+		}
+		
+		int iMove = iBlocks - pBlock;
+		
+		System.arraycopy(blocks, pBlock, blocks, pBlock + pLength, iMove);
+		System.arraycopy(iaBlockCount, pBlock, iaBlockCount, pBlock + pLength, iMove);
+		System.arraycopy(laBlockSum, pBlock, laBlockSum, pBlock + pLength, iMove);
+		
+		for (int i = pBlock, cnt = pBlock + pLength; i < cnt; i++)
+		{
+			blocks[i] = null;
+			iaBlockCount[i] = 0;
+			laBlockSum[i] = 0;
+		}
+		
+		iBlocks = iNewBlocks;
+		
+		bInvalid = true;
+	}
+	
+	/**
+	 * Removes blocks. The values of the blocks have to be removed from the total sum before.
+	 * 
+	 * @param pBlock the first block
+	 * @param pLength the number of blocks
+	 */
+	private void removeBlocks(int pBlock, int pLength)
+	{
+		int iEnd = pBlock + pLength;
+		int iMove = iBlocks - iEnd;
+		
+		System.arraycopy(blocks, iEnd, blocks, pBlock, iMove);
+		System.arraycopy(iaBlockCount, iEnd, iaBlockCount, pBlock, iMove);
+		System.arraycopy(laBlockSum, iEnd, laBlockSum, pBlock, iMove);
+		
+		for (int i = iBlocks - pLength; i < iBlocks; i++)
+		{
+			blocks[i] = null;
+		}
+		
+		iBlocks -= pLength;
+		
+		bInvalid = true;
+	}
+	
+	/**
+	 * Rebuilds the block trees, if necessary.
+	 */
+	private void validate()
+	{
+		if (bInvalid)
+		{
+			for (int i = 1; i <= iBlocks; i++)
+			{
+				iaCountTree[i] = iaBlockCount[i - 1];
+				laSumTree[i] = laBlockSum[i - 1];
+			}
+			
+			for (int i = 1; i <= iBlocks; i++)
+			{
+				int iParent = i + (i & -i);
+				
+				if (iParent <= iBlocks)
+				{
+					iaCountTree[iParent] += iaCountTree[i];
+					laSumTree[iParent] += laSumTree[i];
+				}
+			}
+			
+			bInvalid = false;
+		}
+	}
+	
+	/**
+	 * Checks whether the given position is valid.
+	 * 
+	 * @param pIndex the position
+	 */
+	private void checkIndex(int pIndex)
+	{
+		if (pIndex < 0 || pIndex >= iSize)
+		{
+			throw new IndexOutOfBoundsException("Index: " + pIndex + ", Size: " + iSize);
+		}
+	}
+	
+}	// PrefixSumTree
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.component;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the functionality of {@link LineBreakCache}.
+ * 
+ * @author René Jahn
+ */
+public class TestLineBreakCache
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Initialization
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Starts every test with an empty cache.
+	 */
+	@Before
+	public void setUp()
+	{
+		LineBreakCache.clear();
+		LineBreakCache.resetStatistics();
+	}
+	
+	/**
+	 * Restores the default limits, because the cache is shared.
+	 */
+	@After
+	public void tearDown()
+	{
+		LineBreakCache.setMaximumEntries(LineBreakCache.DEFAULT_MAXIMUM_ENTRIES);
+		LineBreakCache.setMaximumCharacters(LineBreakCache.DEFAULT_MAXIMUM_CHARACTERS);
+		LineBreakCache.clear();
+		LineBreakCache.resetStatistics();
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Test methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Tests hits, misses and the hit ratio.
+	 */
+	@Test
+	public void testStatistics()
+	{
+		FontMetrics fm = getMetrics();
+		
+		Assert.assertEquals(0, LineBreakCache.getHitRatio(), 0);
+		
+		int[] iaLines = LineBreakCache.getLines("Hello world", fm, 100, 0);
+		
+		Assert.assertSame(iaLines, LineBreakCache.getLines("Hello world", fm, 100, 0));
+		Assert.assertSame(iaLines, LineBreakCache.getLines("Hello world", fm, 100, 0));
+		
+		//other width
+		LineBreakCache.getLines("Hello world", fm, 50, 0);
+		
+		Assert.assertEquals(2, LineBreakCache.getHitCount());
+		Assert.assertEquals(2, LineBreakCache.getMissCount());
+		Assert.assertEquals(0.5, LineBreakCache.getHitRatio(), 0.0001);
+		Assert.assertEquals(2, LineBreakCache.getSize());
+		Assert.assertEquals(22, LineBreakCache.getCharacterCount());
+		
+		LineBreakCache.resetStatistics();
+		
+		Assert.assertEquals(0, LineBreakCache.getHitCount());
+		Assert.assertEquals(0, LineBreakCache.getMissCount());
+		Assert.assertEquals(2, LineBreakCache.getSize());
+	}
+	
+	/**
+	 * Tests that the least recently used entries are removed if the maximum number of entries
+	 * is reached.
+	 */
+	@Test
+	public void testMaximumEntries()
+	{
+		FontMetrics fm = getMetrics();
+		
+		LineBreakCache.setMaximumEntries(3);
+		
+		int[] iaFirst = LineBreakCache.getLines("first", fm, 100, 0);
+		
+		LineBreakCache.getLines("second", fm, 100, 0);
+		LineBreakCache.getLines("third", fm, 100, 0);
+		
+		//the first text is used again, so the second is the oldest
+		Assert.assertSame(iaFirst, LineBreakCache.getLines("first", fm, 100, 0));
+		
+		LineBreakCache.getLines("fourth", fm, 100, 0);
+		
+		Assert.assertEquals(3, LineBreakCache.getSize());
+		Assert.assertEquals(16, LineBreakCache.getCharacterCount());
+		
+		LineBreakCache.resetStatistics();
+		
+		Assert.assertSame(iaFirst, LineBreakCache.getLines("first", fm, 100, 0));
+		
+		LineBreakCache.getLines("second", fm, 100, 0);
+		
+		Assert.assertEquals(1, LineBreakCache.getHitCount());
+		Assert.assertEquals(1, LineBreakCache.getMissCount());
+		
+		//a lower limit removes entries immediately
+		LineBreakCache.setMaximumEntries(1);
+		
+		Assert.assertEquals(1, LineBreakCache.getSize());
+		Assert.assertEquals(6, LineBreakCache.getCharacterCount());
+	}
+	
+	/**
+	 * Tests that the least recently used entries are removed if the maximum number of 
+	 * characters is reached, and that text which can't fit isn't cached.
+	 */
+	@Test
+	public void testMaximumCharacters()
+	{
+		FontMetrics fm = getMetrics();
+		
+		LineBreakCache.setMaximumCharacters(20);
+		
+		LineBreakCache.getLines("0123456789", fm, 100, 0);
+		LineBreakCache.getLines("abcdefghij", fm, 100, 0);
+		
+		Assert.assertEquals(2, LineBreakCache.getSize());
+		Assert.assertEquals(20, LineBreakCache.getCharacterCount());
+		
+		LineBreakCache.getLines("ABCDE", fm, 100, 0);
+		
+		Assert.assertEquals(2, LineBreakCache.getSize());
+		Assert.assertEquals(15, LineBreakCache.getCharacterCount());
+		
+		//too long for the cache, the other entries are kept
+		int[] iaLong = LineBreakCache.getLines("this text is too long for the cache", fm, 100, 0);
+		
+		Assert.assertTrue(iaLong.length > 0);
+		Assert.assertEquals(2, LineBreakCache.getSize());
+		Assert.assertEquals(15, LineBreakCache.getCharacterCount());
+		
+		LineBreakCache.resetStatistics();
+		
+		LineBreakCache.getLines("abcdefghij", fm, 100, 0);
+		LineBreakCache.getLines("this text is too long for the cache", fm, 100, 0);
+		
+		Assert.assertEquals(1, LineBreakCache.getHitCount());
+		Assert.assertEquals(1, LineBreakCache.getMissCount());
+	}
+	
+	/**
+	 * Tests that nothing is cached without entries.
+	 */
+	@Test
+	public void testNoEntries()
+	{
+		FontMetrics fm = getMetrics();
+		
+		LineBreakCache.setMaximumEntries(0);
+		
+		LineBreakCache.getLines("Hello world", fm, 100, 0);
+		LineBreakCache.getLines("Hello world", fm, 100, 0);
+		
+		Assert.assertEquals(0, LineBreakCache.getSize());
+		Assert.assertEquals(0, LineBreakCache.getCharacterCount());
+		Assert.assertEquals(2, LineBreakCache.getMissCount());
+	}
+	
+	
+	/**
+	 * Tests that surrogate pairs are measured once and never broken.
+	 */
+	@Test
+	public void testSurrogatePairs()
+	{
+		FontMetrics fm = getMetrics();
+		
+		//musical symbols, outside of the basic multilingual plane
+		String sText = "\uD834\uDD1E\uD834\uDD1E\uD834\uDD1E\uD834\uDD1E";
+		
+		Assert.assertEquals(4 * fm.charWidth(0x1D11E), LineBreakCache.getWidth(sText, fm, 0, sText.length()));
+		
+		int[] iaLines = LineBreakCache.breakLines(sText, 0, sText.length(), fm, 1, 0);
+		
+		Assert.assertEquals(4, iaLines.length / 3);
+		
+		for (int i = 0; i < iaLines.length / 3; i++)
+		{
+			Assert.assertEquals(i * 2, iaLines[i * 3]);
+			Assert.assertEquals(i * 2 + 2, iaLines[i * 3 + 1]);
+		}
+	}
+	
+	/**
+	 * Tests that combining marks stay with their base character.
+	 */
+	@Test
+	public void testCombiningMarks()
+	{
+		FontMetrics fm = getMetrics();
+		
+		String sText = "e\u0301e\u0301e\u0301";
+		
+		int[] iaLines = LineBreakCache.breakLines(sText, 0, sText.length(), fm, 1, 0);
+		
+		Assert.assertEquals(3, iaLines.length / 3);
+		
+		for (int i = 0; i < iaLines.length / 3; i++)
+		{
+			Assert.assertEquals(i * 2, iaLines[i * 3]);
+			Assert.assertEquals(i * 2 + 2, iaLines[i * 3 + 1]);
+		}
+	}
+	
+	/**
+	 * Tests that text which needs a layout is measured with the layout.
+	 */
+	@Test
+	public void testComplexText()
+	{
+		FontMetrics fm = getMetrics();
+		
+		String sText = "\u0645\u0631\u062D\u0628\u0627 \u0628\u0643\u0645";
+		
+		Assert.assertEquals(fm.stringWidth(sText), LineBreakCache.getWidth(sText, fm, 0, sText.length()));
+		
+		int[] iaLines = LineBreakCache.breakLines(sText, 0, sText.length(), fm, -1, 0);
+		
+		Assert.assertEquals(1, iaLines.length / 3);
+		Assert.assertEquals(fm.stringWidth(sText), iaLines[2]);
+		
+		//all characters in lines without gaps
+		iaLines = LineBreakCache.breakLines(sText, 0, sText.length(), fm, fm.stringWidth(sText) / 2, 0);
+		
+		Assert.assertTrue(iaLines.length / 3 > 1);
+		
+		int iPos = 0;
+		
+		for (int i = 0; i < iaLines.length / 3; i++)
+		{
+			Assert.assertEquals(iPos, iaLines[i * 3]);
+			
+			iPos = iaLines[i * 3 + 1];
+		}
+		
+		Assert.assertEquals(sText.length(), iPos);
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Gets the metrics of a default font.
+	 * 
+	 * @return the font metrics
+	 */
+	private static FontMetrics getMetrics()
+	{
+		Graphics2D g2 = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+		
+		try
+		{
+			return g2.getFontMetrics(new Font(Font.DIALOG, Font.PLAIN, 13));
+		}
+		finally
+		{
+			g2.dispose();
+		}
+	}
+	
+}	// TestLineBreakCache
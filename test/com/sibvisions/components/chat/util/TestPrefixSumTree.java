@@ -0,0 +1,292 @@
+/*
+ * Copyright 2023 René Jahn
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sibvisions.components.chat.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the functionality of {@link PrefixSumTree}.
+ * 
+ * @author René Jahn
+ */
+public class TestPrefixSumTree
+{
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // Test methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Tests appending, sums and positions.
+	 */
+	@Test
+	public void testAppend()
+	{
+		PrefixSumTree tree = new PrefixSumTree(4);
+		
+		Assert.assertEquals(-1, tree.indexOf(0));
+		Assert.assertEquals(0, tree.getTotal());
+		
+		for (int i = 0; i < 1000; i++)
+		{
+			tree.insert(i, 1, 10);
+		}
+		
+		Assert.assertEquals(1000, tree.size());
+		Assert.assertEquals(10000, tree.getTotal());
+		Assert.assertEquals(5000, tree.getSum(500));
+		
+		Assert.assertEquals(0, tree.indexOf(0));
+		Assert.assertEquals(0, tree.indexOf(9));
+		Assert.assertEquals(1, tree.indexOf(10));
+		Assert.assertEquals(499, tree.indexOf(4999));
+		Assert.assertEquals(999, tree.indexOf(100000));
+	}
+	
+	/**
+	 * Tests inserting and removing in the middle.
+	 */
+	@Test
+	public void testInsertRemoveMiddle()
+	{
+		PrefixSumTree tree = new PrefixSumTree(16);
+		
+		tree.insert(0, 1000, 1);
+		
+		//insert before the last value, like new messages before a typing message
+		for (int i = 0; i < 500; i++)
+		{
+			tree.insert(tree.size() - 1, 1, 2);
+		}
+		
+		Assert.assertEquals(1500, tree.size());
+		Assert.assertEquals(2000, tree.getTotal());
+		Assert.assertEquals(1, tree.get(1499));
+		Assert.assertEquals(2, tree.get(1498));
+		Assert.assertEquals(999, tree.getSum(999));
+		
+		tree.remove(500, 700);
+		
+		Assert.assertEquals(800, tree.size());
+		Assert.assertEquals(501 + 299 * 2, tree.getTotal());
+		
+		tree.remove(0, tree.size());
+		
+		Assert.assertEquals(0, tree.size());
+		Assert.assertEquals(0, tree.getTotal());
+		
+		tree.insert(0, 3, 7);
+		
+		Assert.assertEquals(21, tree.getTotal());
+	}
+	
+	/**
+	 * Tests that zero values are found with the last position of a sum.
+	 */
+	@Test
+	public void testZeroValues()
+	{
+		PrefixSumTree tree = new PrefixSumTree(16);
+		
+		tree.insert(0, 300, 0);
+		tree.set(100, 5);
+		
+		Assert.assertEquals(100, tree.indexOf(0));
+		Assert.assertEquals(299, tree.indexOf(5));
+		Assert.assertEquals(5, tree.getSum(101));
+		Assert.assertEquals(0, tree.getSum(100));
+	}
+	
+	/**
+	 * Tests that sums of large values don't overflow.
+	 */
+	@Test
+	public void testLargeSums()
+	{
+		PrefixSumTree tree = new PrefixSumTree(16);
+		
+		tree.insert(0, 200, Integer.MAX_VALUE / 2);
+		tree.set(150, Integer.MAX_VALUE);
+		
+		long lValue = Integer.MAX_VALUE / 2;
+		
+		Assert.assertEquals(199 * lValue + Integer.MAX_VALUE, tree.getTotal());
+		Assert.assertEquals(150 * lValue, tree.getSum(150));
+		Assert.assertEquals(150 * lValue + Integer.MAX_VALUE, tree.getSum(151));
+		Assert.assertEquals(150, tree.indexOf(150 * lValue + 1));
+		Assert.assertEquals(151, tree.indexOf(150 * lValue + Integer.MAX_VALUE));
+		
+		tree.remove(0, 100);
+		
+		Assert.assertEquals(99 * lValue + Integer.MAX_VALUE, tree.getTotal());
+		Assert.assertEquals(51, tree.indexOf(50 * lValue + Integer.MAX_VALUE));
+	}
+	
+	/**
+	 * Tests invalid positions.
+	 */
+	@Test
+	public void testInvalidIndex()
+	{
+		PrefixSumTree tree = new PrefixSumTree(16);
+		
+		tree.insert(0, 10, 1);
+		
+		try
+		{
+			tree.get(10);
+			
+			Assert.fail("Invalid index was accepted!");
+		}
+		catch (IndexOutOfBoundsException ex)
+		{
+			//expected
+		}
+		
+		try
+		{
+			tree.remove(5, 6);
+			
+			Assert.fail("Invalid range was accepted!");
+		}
+		catch (IndexOutOfBoundsException ex)
+		{
+			//expected
+		}
+		
+		try
+		{
+			tree.insert(11, 1, 1);
+			
+			Assert.fail("Invalid index was accepted!");
+		}
+		catch (IndexOutOfBoundsException ex)
+		{
+			//expected
+		}
+	}
+	
+	/**
+	 * Tests random changes against a simple list.
+	 */
+	@Test
+	public void testRandomChanges()
+	{
+		Random random = new Random(4711);
+		
+		PrefixSumTree tree = new PrefixSumTree(16);
+		List<Integer> liValues = new ArrayList<Integer>();
+		
+		for (int i = 0; i < 20000; i++)
+		{
+			int iOperation = random.nextInt(10);
+			int iSize = liValues.size();
+			
+			if (iOperation < 4 || iSize == 0)
+			{
+				int iIndex = random.nextInt(iSize + 1);
+				int iLength = random.nextInt(10) == 0 ? random.nextInt(300) + 1 : 1;
+				int iValue = random.nextInt(100);
+				
+				tree.insert(iIndex, iLength, iValue);
+				
+				for (int j = 0; j < iLength; j++)
+				{
+					liValues.add(iIndex, Integer.valueOf(iValue));
+				}
+			}
+			else if (iOperation < 7)
+			{
+				int iIndex = random.nextInt(iSize);
+				int iLength = Math.min(iSize - iIndex, random.nextInt(10) == 0 ? random.nextInt(300) + 1 : 1);
+				
+				tree.remove(iIndex, iLength);
+				
+				liValues.subList(iIndex, iIndex + iLength).clear();
+			}
+			else
+			{
+				int iIndex = random.nextInt(iSize);
+				int iValue = random.nextInt(100);
+				
+				tree.set(iIndex, iValue);
+				
+				liValues.set(iIndex, Integer.valueOf(iValue));
+			}
+			
+			if (i % 100 == 0)
+			{
+				check(tree, liValues, random);
+			}
+		}
+		
+		check(tree, liValues, random);
+	}
+	
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // User-defined methods
+    //~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	/**
+	 * Checks the tree against the expected values.
+	 * 
+	 * @param pTree the tree
+	 * @param pValues the expected values
+	 * @param pRandom the random generator for the searched sums
+	 */
+	private static void check(PrefixSumTree pTree, List<Integer> pValues, Random pRandom)
+	{
+		int iSize = pValues.size();
+		
+		Assert.assertEquals(iSize, pTree.size());
+		
+		int[] iaSum = new int[iSize + 1];
+		
+		for (int i = 0; i < iSize; i++)
+		{
+			Assert.assertEquals(pValues.get(i).intValue(), pTree.get(i));
+			
+			iaSum[i + 1] = iaSum[i] + pValues.get(i).intValue();
+		}
+		
+		Assert.assertEquals(iaSum[iSize], pTree.getTotal());
+		
+		for (int i = 0; i <= iSize; i += 1 + iSize / 50)
+		{
+			Assert.assertEquals(iaSum[i], pTree.getSum(i));
+		}
+		
+		for (int i = 0; i < 50 && iSize > 0; i++)
+		{
+			int iSearch = pRandom.nextInt(iaSum[iSize] + 10);
+			
+			//the number of values with a sum <= iSearch
+			int iCount = 0;
+			
+			while (iCount < iSize && iaSum[iCount + 1] <= iSearch)
+			{
+				iCount++;
+			}
+			
+			Assert.assertEquals(Math.min(iCount, iSize - 1), pTree.indexOf(iSearch));
+		}
+	}
+	
+}	// TestPrefixSumTree